@@ -0,0 +1,109 @@
+package com.example;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The stages of the Analyser around the FFT, as plain loops and as SIMD
+// kernels, and a whole slice of samples pushed through it (using whichever
+// Kernels selects, i.e. SIMD as the fork adds the vector module)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class AnalyserBenchmark
+{
+    @Param({ "1024", "4096", "16384" })
+    public int size;
+
+    private double[] history;
+    private double[] window;
+    private double[] input;
+    private double[] sumRe;
+    private double[] sumIm;
+    private double[] slice;
+    private Analyser analyser;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(42);
+        history = new double[size];
+        window = new double[size];
+        input = new double[size];
+        for (int i = 0; i < size; i++)
+        {
+            history[i] = random.nextDouble() * 2 - 1;
+            window[i] = 0.53836 - 0.46164 * Math.cos(2 * Math.PI * i / size);
+        }
+
+        final int bins = size / 2 + 1;
+        sumRe = new double[bins];
+        sumIm = new double[bins];
+        slice = new double[bins];
+        for (int i = 0; i < bins; i++)
+        {
+            sumRe[i] = random.nextGaussian() * size;
+            sumIm[i] = random.nextGaussian() * size;
+        }
+
+        // Two FFTs per slice, as when there are fewer columns than chunks
+        analyser = new Analyser(size, 2 * size);
+    }
+
+    @Benchmark
+    public double[] windowScalar()
+    {
+        Kernels.windowScalar(history, size / 3, window, input);
+        return input;
+    }
+
+    @Benchmark
+    public double[] windowVector()
+    {
+        VectorKernels.window(history, size / 3, window, input);
+        return input;
+    }
+
+    @Benchmark
+    public double[] normaliseScalar()
+    {
+        Kernels.normaliseScalar(sumRe, sumIm, 2, size, slice);
+        return slice;
+    }
+
+    @Benchmark
+    public double[] normaliseVector()
+    {
+        VectorKernels.normalise(sumRe, sumIm, 2, size, slice);
+        return slice;
+    }
+
+    @Benchmark
+    public double[] slice()
+    {
+        double[] result = null;
+        for (int i = 0; i < 2 * size; i++)
+        {
+            double[] s = analyser.push(history[i & (size - 1)]);
+            if (s != null)
+            {
+                result = s;
+            }
+        }
+        return result;
+    }
+}
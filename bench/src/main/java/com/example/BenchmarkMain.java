@@ -0,0 +1,21 @@
+package com.example;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// JMH's main with the GC profiler always enabled, so that every run reports
+// allocation rates (gc.alloc.rate.norm = bytes per operation) alongside the
+// timings. Takes the usual JMH options, e.g. a benchmark regex, -p size=1024
+public class BenchmarkMain
+{
+    public static void main(String[] args) throws Exception
+    {
+        CommandLineOptions options = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder()
+            .parent(options)
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Band zoom: the given number of bins over 50-60 Hz at 44.1 kHz, against
+// the full FFT of the same samples. An FFT with the same bin spacing would
+// need about bins * 2205 points.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChirpZBenchmark
+{
+    @Param({ "1024", "4096", "16384" })
+    public int size;
+
+    @Param({ "64", "256", "1024" })
+    public int bins;
+
+    private ChirpZ chirpZ;
+    private RealFFT realFFT;
+    private double[] input;
+    private double[] re;
+    private double[] im;
+
+    @Setup
+    public void setup()
+    {
+        chirpZ = new ChirpZ(size, bins, 50 / 22050.0, 60 / 22050.0);
+        realFFT = new RealFFT(size);
+        Random random = new Random(42);
+        input = new double[size];
+        for (int i = 0; i < size; i++)
+        {
+            input[i] = random.nextDouble() * 2 - 1;
+        }
+        re = new double[Math.max(bins, realFFT.bins())];
+        im = new double[Math.max(bins, realFFT.bins())];
+    }
+
+    @Benchmark
+    public double[] chirpZ()
+    {
+        chirpZ.transform(input, re, im);
+        return re;
+    }
+
+    @Benchmark
+    public double[] real()
+    {
+        realFFT.transform(input, re, im);
+        return re;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Byte to sample conversion of one channel of a stereo block, both from a
+// byte array (Decoder) and through the sources the Reader uses. Little
+// endian files are written as WAVE, big endian ones as AIFF.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark
+{
+    private static final int FRAMES = 16 * 1024;
+    private static final int CHANNELS = 2;
+
+    @Param({ "8", "16", "24", "32" })
+    public int bits;
+
+    @Param({ "false", "true" })
+    public boolean bigEndian;
+
+    private Decoder decoder;
+    private byte[] bytes;
+    private double[] samples;
+    private File file;
+    private Source mapped;
+    private Source stream;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        // WAVE stores 8-bit samples unsigned
+        final AudioFormat.Encoding encoding = bits == 8 && !bigEndian
+            ? AudioFormat.Encoding.PCM_UNSIGNED
+            : AudioFormat.Encoding.PCM_SIGNED;
+        final int frameSize = bits / 8 * CHANNELS;
+        final AudioFormat format = new AudioFormat(encoding, 44100, bits, CHANNELS, frameSize, 44100, bigEndian);
+
+        decoder = new Decoder(format);
+        bytes = new byte[FRAMES * frameSize];
+        new Random(42).nextBytes(bytes);
+        samples = new double[FRAMES];
+
+        final AudioFileFormat.Type type = bigEndian ? AudioFileFormat.Type.AIFF : AudioFileFormat.Type.WAVE;
+        file = File.createTempFile("jspect-bench", "." + type.getExtension());
+        try (AudioInputStream in = new AudioInputStream(new ByteArrayInputStream(bytes), format, FRAMES))
+        {
+            AudioSystem.write(in, type, file);
+        }
+        mapped = MappedSource.open(file);
+        if (mapped == null)
+        {
+            throw new IllegalStateException("Format not supported by MappedSource: " + format);
+        }
+        stream = new StreamSource(file);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        mapped.close();
+        stream.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public double[] decoder()
+    {
+        for (int i = 0; i < FRAMES; i++)
+        {
+            samples[i] = decoder.decode(bytes, i, 0);
+        }
+        return samples;
+    }
+
+    @Benchmark
+    public double[] mappedSource() throws IOException
+    {
+        mapped.seek(0);
+        mapped.read(samples, 0, FRAMES, 0);
+        return samples;
+    }
+
+    @Benchmark
+    public double[] streamSource() throws IOException
+    {
+        // Includes reopening the stream on the backward seek
+        stream.seek(0);
+        stream.read(samples, 0, FRAMES, 0);
+        return samples;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FFTBenchmark
+{
+    @Param({ "256", "512", "1024", "2048", "4096", "8192", "16384", "32768", "65536" })
+    public int size;
+
+    private FFT fft;
+    private RealFFT realFFT;
+    private double[] input;
+    private double[] re;
+    private double[] im;
+    private double[] outRe;
+    private double[] outIm;
+
+    @Setup
+    public void setup()
+    {
+        fft = new FFT(size);
+        realFFT = new RealFFT(size);
+        Random random = new Random(42);
+        input = new double[size];
+        for (int i = 0; i < size; i++)
+        {
+            input[i] = random.nextDouble() * 2 - 1;
+        }
+        re = new double[size];
+        im = new double[size];
+        outRe = new double[realFFT.bins()];
+        outIm = new double[realFFT.bins()];
+    }
+
+    @Benchmark
+    public double[] complex()
+    {
+        // In place, so start from the same input every time
+        System.arraycopy(input, 0, re, 0, size);
+        Arrays.fill(im, 0);
+        fft.transform(re, im);
+        return re;
+    }
+
+    @Benchmark
+    public double[] real()
+    {
+        realFFT.transform(input, outRe, outIm);
+        return outRe;
+    }
+}
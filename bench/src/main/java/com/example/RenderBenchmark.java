@@ -0,0 +1,94 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Colour mapping of one pixel column, from display rows and from several
+// slices averaged by the Renderer, held as double[] or in 8/16-bit stores
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark
+{
+    private static final int BINS = 513;
+    private static final int SLICES_PER_PIXEL = 8;
+
+    @Param({ "256", "1024" })
+    public int height;
+
+    private final Colormap colormap = Colormap.hot();
+    private final Renderer renderer = new Renderer(colormap);
+    private final List<double[]> slices = new ArrayList<>();
+    private final SliceStore bytes = new SliceStore(SLICES_PER_PIXEL, BINS, 8);
+    private final SliceStore shorts = new SliceStore(SLICES_PER_PIXEL, BINS, 16);
+    private double[] rows; // One per pixel
+    private int[] pixels;
+
+    @Setup
+    public void setup()
+    {
+        Random random = new Random(42);
+        for (int i = 0; i < SLICES_PER_PIXEL; i++)
+        {
+            double[] slice = new double[BINS];
+            for (int j = 0; j < BINS; j++)
+            {
+                slice[j] = random.nextDouble();
+            }
+            slices.add(slice);
+            bytes.put(i, slice);
+            shorts.put(i, slice);
+        }
+        rows = new double[height];
+        for (int i = 0; i < height; i++)
+        {
+            rows[i] = random.nextDouble();
+        }
+        pixels = new int[height];
+    }
+
+    @Benchmark
+    public int[] colormap()
+    {
+        colormap.rows(rows, pixels, 0, height);
+        return pixels;
+    }
+
+    @Benchmark
+    public int[] renderer()
+    {
+        renderer.column(slices, SLICES_PER_PIXEL, 0, 1, pixels, height);
+        return pixels;
+    }
+
+    @Benchmark
+    public int[] renderer8()
+    {
+        renderer.column(bytes, SLICES_PER_PIXEL, 0, 1, pixels, height);
+        return pixels;
+    }
+
+    @Benchmark
+    public int[] renderer16()
+    {
+        renderer.column(shorts, SLICES_PER_PIXEL, 0, 1, pixels, height);
+        return pixels;
+    }
+}
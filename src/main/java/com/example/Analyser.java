@@ -0,0 +1,282 @@
+package com.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+// Turns a stream of samples into spectrogram slices. Total number of frames
+// is divided equally(-ish) between all columns of the spectrogram -> slice.
+// Arbitrary size of frames used to perform FFT (to ensure sufficient samples)
+// -> chunk. If slice > chunk, an FFT is performed every hop of the plan and
+// the FFTs of a slice are averaged. Otherwise, use a single FFT (w/ possible
+// overlap) per slice.
+public class Analyser
+{
+    private final Plan plan;
+    private final int n;
+    private final int samplesPerSlice;
+    private final int stride;
+    private final Transform transform;
+    private final int bins;
+    private final double[] window;
+    private final double[] history;
+    private final double[] input;
+    private final double[] re;
+    private final double[] im;
+    private final double[] sumRe; // Or the power, unless complex averaging
+    private final double[] sumIm;
+    private int position = 0;
+    private int numSamples = 0;
+    private int numChunks = 0;
+    private long numTransforms = 0;
+
+    public Analyser(Plan plan, int samplesPerSlice)
+    {
+        this.plan = plan;
+        this.n = plan.fftSize;
+        this.samplesPerSlice = samplesPerSlice;
+        this.stride = plan.stride(samplesPerSlice);
+        this.transform = plan.newTransform();
+        this.bins = transform.bins(); // Real input, only n/2 + 1 unique bins (or the band's)
+        this.window = plan.window();
+        this.history = new double[n];
+        this.input = new double[n];
+        this.re = new double[bins];
+        this.im = new double[bins];
+        this.sumRe = new double[bins];
+        this.sumIm = new double[bins];
+    }
+
+    // Hamming window, no overlap & complex averaging
+    public Analyser(int chunkSize, int samplesPerSlice)
+    {
+        this(Plan.of(chunkSize), samplesPerSlice);
+    }
+
+    // Analyse the frames [begin, end) of a source on their own, seeking to
+    // one chunk before begin to fill the first FFT. Each track of the mode
+    // gets its own analyser, and the slices of a column are joined. Stops
+    // early (returning the slices so far) once isRunning returns false.
+    // Progress is added to metrics unless that is null.
+    public static List<double[]> analyse(Source source, Plan plan, int samplesPerSlice,
+        long begin, long end, ChannelMode mode, BooleanSupplier isRunning, Metrics metrics) throws IOException
+    {
+        final long overlap = Math.min(plan.fftSize, begin);
+        final int blockSize = Math.max(plan.fftSize, 16 * 1024);
+        final int frameSize = Math.max(0, source.getFormat().getFrameSize());
+        final int channels = source.getFormat().getChannels();
+        final int tracks = mode.tracks(channels);
+
+        List<double[]> result = new ArrayList<>();
+        Analyser[] analysers = new Analyser[tracks];
+        List<List<double[]>> trackSlices = new ArrayList<>();
+        for (int t = 0; t < tracks; t++)
+        {
+            analysers[t] = new Analyser(plan, samplesPerSlice);
+            trackSlices.add(new ArrayList<>());
+        }
+        double[][] blocks = mode.buffers(channels, blockSize);
+        source.seek(begin - overlap);
+
+        long remaining = end - begin + overlap;
+        while (remaining > 0)
+        {
+            if (!isRunning.getAsBoolean())
+            {
+                return result;
+            }
+
+            Events.Read read = new Events.Read();
+            read.begin();
+            int numFramesRead = mode.read(source, blocks, 0, (int)Math.min(blockSize, remaining));
+            if (numFramesRead == -1)
+            {
+                break;
+            }
+            read.frames = numFramesRead;
+            read.bytes = (long)numFramesRead * frameSize;
+            read.commit();
+
+            Events.Analyse analyse = new Events.Analyse();
+            analyse.begin();
+            final long numTransforms = transforms(analysers);
+            final int numSlices = result.size();
+            final int numPrimed = (int)Math.max(0, Math.min(numFramesRead, remaining - (end - begin)));
+            for (int t = 0; t < tracks; t++)
+            {
+                final Analyser analyser = analysers[t];
+                final double[] block = blocks[t];
+                for (int i = 0; i < numPrimed; i++)
+                {
+                    analyser.prime(block[i]);
+                }
+                for (int i = numPrimed; i < numFramesRead; i++)
+                {
+                    double[] slice = analyser.push(block[i]);
+                    if (slice != null)
+                    {
+                        trackSlices.get(t).add(slice);
+                    }
+                }
+            }
+            join(trackSlices, result);
+            remaining -= numFramesRead;
+
+            analyse.samples = numFramesRead;
+            analyse.transforms = (int)(transforms(analysers) - numTransforms);
+            analyse.slices = result.size() - numSlices;
+            analyse.commit();
+            if (metrics != null)
+            {
+                metrics.addBytesRead(read.bytes);
+                metrics.addTransforms(analyse.transforms);
+                metrics.addSlices(analyse.slices);
+            }
+        }
+
+        // Range may end in a partial slice at the end of the file
+        final long numTransforms = transforms(analysers);
+        final int numSlices = result.size();
+        for (int t = 0; t < tracks; t++)
+        {
+            double[] slice = analysers[t].flush();
+            if (slice != null)
+            {
+                trackSlices.get(t).add(slice);
+            }
+        }
+        join(trackSlices, result);
+        if (metrics != null)
+        {
+            metrics.addTransforms(transforms(analysers) - numTransforms);
+            metrics.addSlices(result.size() - numSlices);
+        }
+        return result;
+    }
+
+    private static long transforms(Analyser[] analysers)
+    {
+        long count = 0;
+        for (Analyser analyser : analysers)
+        {
+            count += analyser.transforms();
+        }
+        return count;
+    }
+
+    // Move the slices of all tracks to result, one joined slice per column
+    private static void join(List<List<double[]>> trackSlices, List<double[]> result)
+    {
+        final int tracks = trackSlices.size();
+        final double[][] parts = new double[tracks][];
+        for (int i = 0; i < trackSlices.get(0).size(); i++)
+        {
+            for (int t = 0; t < tracks; t++)
+            {
+                parts[t] = trackSlices.get(t).get(i);
+            }
+            result.add(ChannelMode.join(parts));
+        }
+        for (List<double[]> slices : trackSlices)
+        {
+            slices.clear();
+        }
+    }
+
+    public int bins()
+    {
+        return bins;
+    }
+
+    // Total number of FFTs performed so far
+    public long transforms()
+    {
+        return numTransforms;
+    }
+
+    // Add a sample preceding the first slice, only used for overlap
+    public void prime(double sample)
+    {
+        history[position] = sample;
+        position = (position + 1) & (n - 1);
+    }
+
+    // Add a sample, returns the finished slice if this sample completed one
+    public double[] push(double sample)
+    {
+        prime(sample);
+        numSamples++;
+
+        boolean sliceFull = numSamples == samplesPerSlice;
+        if (numSamples % stride == 0 || sliceFull)
+        {
+            chunk();
+        }
+        return sliceFull ? finish() : null;
+    }
+
+    // Finish a partially filled slice at the end of the stream
+    public double[] flush()
+    {
+        if (numSamples == 0)
+        {
+            return null;
+        }
+        if (numSamples % stride != 0)
+        {
+            chunk();
+        }
+        return finish();
+    }
+
+    private void chunk()
+    {
+        Kernels.window(history, position, window, input);
+
+        // Perform FFT
+        transform.transform(input, re, im);
+        numChunks++;
+        numTransforms++;
+
+        // Accumulate result
+        switch (plan.averaging)
+        {
+            case POWER:
+                Kernels.addPower(sumRe, re, im, bins);
+                break;
+            case PEAK:
+                Kernels.maxPower(sumRe, re, im, bins);
+                break;
+            default:
+                Kernels.add(sumRe, re, bins);
+                Kernels.add(sumIm, im, bins);
+                break;
+        }
+    }
+
+    private double[] finish()
+    {
+        // Average multiple FFTs (if any) & reset buffer
+        double[] slice = new double[bins];
+        switch (plan.averaging)
+        {
+            case POWER:
+                Kernels.normalisePower(sumRe, numChunks, n, slice);
+                break;
+            case PEAK:
+                Kernels.normalisePower(sumRe, 1, n, slice);
+                break;
+            default:
+                Kernels.normalise(sumRe, sumIm, numChunks, n, slice);
+                break;
+        }
+        Arrays.fill(sumRe, 0);
+        Arrays.fill(sumIm, 0);
+
+        numSamples = 0;
+        numChunks = 0;
+        return slice;
+    }
+}
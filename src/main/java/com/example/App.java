@@ -4,31 +4,180 @@ import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
+import javafx.scene.control.Tab;
+import javafx.scene.control.TabPane;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyCodeCombination;
+import javafx.scene.input.KeyCombination;
 import javafx.stage.Stage;
 
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
 
+import javax.sound.sampled.AudioFormat;
+
+// Usage: App [FILE...]
+//        App --live [--rate HZ] [--bits N] [--channels N] [--big-endian]
+//            [--unsigned] [--float] [FILE|-]
+// Each file opens in a tab of its own, Ctrl+T opens another. All tabs are
+// analysed on the shared scheduler, the selected one first.
+// In live mode raw PCM is read from FILE (e.g. a named pipe) or stdin, by
+// default in CD format, e.g. arecord -f cd -t raw | App --live
 public class App extends Application {
 
     private static Scene scene;
 
+    private final TabPane tabs = new TabPane();
+
     @Override
     public void start(Stage stage) throws IOException
     {
-        scene = new Scene(loadFXML("app"), 640, 480);
+        // Only the selected tab is visible
+        tabs.getSelectionModel().selectedItemProperty().addListener((observable, oldValue, newValue) -> {
+            if (oldValue != null)
+            {
+                ((Controller)oldValue.getUserData()).setVisible(false);
+            }
+            if (newValue != null)
+            {
+                ((Controller)newValue.getUserData()).setVisible(true);
+            }
+        });
+        scene = new Scene(tabs, 640, 480);
+        scene.getAccelerators().put(new KeyCodeCombination(KeyCode.T, KeyCombination.SHORTCUT_DOWN), () -> {
+            try
+            {
+                addTab();
+                tabs.getSelectionModel().selectLast();
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+        });
         stage.setScene(scene);
         stage.setTitle("jspect");
+
+        List<String> args = getParameters().getRaw();
+        if (args.contains("--live"))
+        {
+            try
+            {
+                startLive(addTab(), args);
+            }
+            catch (IllegalArgumentException e)
+            {
+                System.err.println(e.getMessage());
+                System.err.println("Usage: App --live [--rate HZ] [--bits N] [--channels N] [--big-endian] [--unsigned] [--float] [FILE|-]");
+                System.exit(2);
+            }
+        }
+        else if (args.isEmpty())
+        {
+            addTab();
+        }
+        else
+        {
+            for (String arg : args)
+            {
+                addTab().open(new File(arg));
+            }
+        }
         stage.show();
     }
 
-    private static Parent loadFXML(String fxml) throws IOException
+    // Add a tab with a view of its own, hidden unless it's the only one
+    private Controller addTab() throws IOException
+    {
+        FXMLLoader loader = new FXMLLoader(App.class.getResource("app.fxml"));
+        Parent root = loader.load();
+        Controller controller = loader.getController();
+        Tab tab = new Tab();
+        tab.setContent(root);
+        tab.setUserData(controller);
+        tab.textProperty().bind(controller.titleProperty());
+        tab.setOnClosed(e -> {
+            controller.close();
+            if (tabs.getTabs().isEmpty())
+            {
+                try
+                {
+                    addTab();
+                }
+                catch (IOException ex)
+                {
+                    ex.printStackTrace();
+                }
+            }
+        });
+        controller.setVisible(false);
+        tabs.getTabs().add(tab);
+        return controller;
+    }
+
+    private static void startLive(Controller controller, List<String> args) throws IOException
+    {
+        float rate = 44100;
+        int bits = 16;
+        int channels = 2;
+        boolean bigEndian = false;
+        AudioFormat.Encoding encoding = AudioFormat.Encoding.PCM_SIGNED;
+        String path = "-";
+        for (int i = 0; i < args.size(); i++)
+        {
+            switch (args.get(i))
+            {
+                case "--live":
+                    break;
+                case "--rate":
+                    rate = Float.parseFloat(value(args, ++i));
+                    break;
+                case "--bits":
+                    bits = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--channels":
+                    channels = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--big-endian":
+                    bigEndian = true;
+                    break;
+                case "--unsigned":
+                    encoding = AudioFormat.Encoding.PCM_UNSIGNED;
+                    break;
+                case "--float":
+                    encoding = AudioFormat.Encoding.PCM_FLOAT;
+                    break;
+                default:
+                    path = args.get(i);
+                    break;
+            }
+        }
+
+        if (!(rate > 0) || bits < 1 || channels < 1)
+        {
+            throw new IllegalArgumentException("Rate, bits and channels must be positive");
+        }
+
+        final AudioFormat format = new AudioFormat(encoding, rate, bits, channels,
+            (bits + 7) / 8 * channels, rate, bigEndian);
+        final InputStream in = path.equals("-") ? System.in : new FileInputStream(path);
+        controller.startLive(in, format);
+    }
+
+    private static String value(List<String> args, int i)
     {
-        FXMLLoader loader = new FXMLLoader(App.class.getResource(fxml + ".fxml"));
-        return loader.load();
+        if (i >= args.size())
+        {
+            throw new IllegalArgumentException("Missing value for " + args.get(i - 1));
+        }
+        return args.get(i);
     }
 
     public static void main(String[] args)
     {
         Application.launch(args);
     }
-}
\ No newline at end of file
+}
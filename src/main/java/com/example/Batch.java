@@ -0,0 +1,367 @@
+package com.example;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioSystem;
+
+// Headless entry point which renders spectrogram PNGs for files and
+// directories of audio files, without starting JavaFX. Each file is read on
+// a virtual thread while its FFTs run on the shared scheduler, and at most
+// one file per core is in progress at once.
+//
+// Usage: java -cp target/classes com.example.Batch [--width N] [--height N]
+//        [--out DIR] [--jobs N] [--channels first|stacked|mid-side]
+//        [--fft N] [--window hann|hamming|blackman-harris] [--hop N]
+//        [--averaging complex|power|peak] [--preview K] [--axis linear|log|mel]
+//        [--band LOW-HIGH [--bins N]] FILE|DIR...
+//
+// With --preview, each column averages at most K FFTs spread over it instead
+// of all of them, for quick overviews of very long files. Slices are reduced
+// to the rows of the image (on the given frequency axis) as they are
+// computed, so memory depends on the image size and not on the FFT size.
+// With --band, only N bins (the image height by default) between LOW and
+// HIGH Hz are computed, by a chirp-Z transform of each FFT's samples.
+public class Batch
+{
+    private static final String[] EXTENSIONS = { ".wav", ".aif", ".aiff", ".aifc", ".au", ".snd", ".flac" };
+
+    private int width = 1024;
+    private int height = 512;
+    private Path out = Path.of(".");
+    private int jobs = Runtime.getRuntime().availableProcessors();
+    private ChannelMode mode = ChannelMode.FIRST;
+    private int fftSize = Plan.DEFAULT.fftSize;
+    private Plan.Window window = Plan.DEFAULT.window;
+    private int hop = 0;
+    private Plan.Averaging averaging = Plan.DEFAULT.averaging;
+    private Plan plan;
+    private int preview = 0; // FFTs per column, 0 for all
+    private BinMap.Axis axis = BinMap.Axis.LINEAR;
+    private double[] band; // { low, high } in Hz, null for all bins
+    private int bins = 0; // Of the band, 0 for the height
+    private final List<Path[]> inputs = new ArrayList<>(); // { file, output relative to out }
+
+    private final AtomicInteger numRendered = new AtomicInteger();
+    private final AtomicInteger numFailed = new AtomicInteger();
+    private final DoubleAdder seconds = new DoubleAdder();
+
+    public static void main(String[] args)
+    {
+        Batch batch = new Batch();
+        try
+        {
+            batch.parse(args);
+        }
+        catch (IllegalArgumentException | IOException e)
+        {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: Batch [--width N] [--height N] [--out DIR] [--jobs N] [--channels first|stacked|mid-side]"
+                + " [--fft N] [--window hann|hamming|blackman-harris] [--hop N] [--averaging complex|power|peak] [--preview K] [--axis linear|log|mel]"
+                + " [--band LOW-HIGH [--bins N]] FILE|DIR...");
+            System.exit(2);
+        }
+        System.exit(batch.run() ? 0 : 1);
+    }
+
+    private void parse(String[] args) throws IOException
+    {
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "--width":
+                    width = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--height":
+                    height = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--out":
+                    out = Path.of(value(args, ++i));
+                    break;
+                case "--jobs":
+                    jobs = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--channels":
+                    mode = ChannelMode.valueOf(constant(value(args, ++i)));
+                    break;
+                case "--fft":
+                    fftSize = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--window":
+                    window = Plan.Window.valueOf(constant(value(args, ++i)));
+                    break;
+                case "--hop":
+                    hop = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--averaging":
+                    averaging = Plan.Averaging.valueOf(constant(value(args, ++i)));
+                    break;
+                case "--preview":
+                    preview = Integer.parseInt(value(args, ++i));
+                    break;
+                case "--axis":
+                    axis = BinMap.Axis.valueOf(constant(value(args, ++i)));
+                    break;
+                case "--band":
+                    band = band(value(args, ++i));
+                    break;
+                case "--bins":
+                    bins = Integer.parseInt(value(args, ++i));
+                    break;
+                default:
+                    add(Path.of(args[i]));
+                    break;
+            }
+        }
+        if (inputs.isEmpty())
+        {
+            throw new IllegalArgumentException("No input files");
+        }
+        if (width < 1 || height < 1 || jobs < 1 || preview < 0 || bins < 0)
+        {
+            throw new IllegalArgumentException("Width, height, jobs, preview and bins must be positive");
+        }
+        if (Arrays.binarySearch(Plan.SIZES, fftSize) < 0)
+        {
+            throw new IllegalArgumentException("FFT size must be a power of two from " + Plan.SIZES[0] + " to "
+                + Plan.SIZES[Plan.SIZES.length - 1] + ": " + fftSize);
+        }
+        plan = Plan.of(fftSize, window, hop, averaging);
+    }
+
+    // e.g. 50-60 -> { 50, 60 }
+    private static double[] band(String value)
+    {
+        final String[] parts = value.split("-");
+        if (parts.length != 2)
+        {
+            throw new IllegalArgumentException("Band must be LOW-HIGH in Hz: " + value);
+        }
+        final double low = Double.parseDouble(parts[0]);
+        final double high = Double.parseDouble(parts[1]);
+        if (!(low >= 0 && low < high))
+        {
+            throw new IllegalArgumentException("Band must be LOW-HIGH in Hz: " + value);
+        }
+        return new double[] { low, high };
+    }
+
+    private static String value(String[] args, int i)
+    {
+        if (i >= args.length)
+        {
+            throw new IllegalArgumentException("Missing value for " + args[i - 1]);
+        }
+        return args[i];
+    }
+
+    // e.g. mid-side -> MID_SIDE
+    private static String constant(String value)
+    {
+        return value.toUpperCase(Locale.ROOT).replace('-', '_');
+    }
+
+    private static boolean isAudio(Path path)
+    {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        for (String extension : EXTENSIONS)
+        {
+            if (name.endsWith(extension))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Path png(Path relative)
+    {
+        // Keep the extension so that e.g. a.wav and a.aiff don't collide
+        return relative.resolveSibling(relative.getFileName() + ".png");
+    }
+
+    private void add(Path path) throws IOException
+    {
+        if (Files.isDirectory(path))
+        {
+            // Mirror the directory structure in the output directory
+            try (Stream<Path> stream = Files.walk(path))
+            {
+                for (Path file : stream.filter(Files::isRegularFile).filter(Batch::isAudio).sorted().toList())
+                {
+                    inputs.add(new Path[] { file, png(path.relativize(file)) });
+                }
+            }
+        }
+        else if (Files.isRegularFile(path))
+        {
+            inputs.add(new Path[] { path, png(path.getFileName()) });
+        }
+        else
+        {
+            throw new IllegalArgumentException("No such file or directory: " + path);
+        }
+    }
+
+    public boolean run()
+    {
+        final long startTime = System.nanoTime();
+        final Semaphore permits = new Semaphore(jobs);
+        try (ExecutorService io = Executors.newVirtualThreadPerTaskExecutor())
+        {
+            for (Path[] input : inputs)
+            {
+                io.execute(() -> {
+                    try
+                    {
+                        permits.acquire();
+                        try
+                        {
+                            render(input[0], out.resolve(input[1]));
+                        }
+                        finally
+                        {
+                            permits.release();
+                        }
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                    catch (Exception e)
+                    {
+                        numFailed.incrementAndGet();
+                        System.err.println(input[0] + ": " + e.getMessage());
+                    }
+                });
+            }
+        }
+
+        // Summary, the audio of files of unknown length not included
+        final double elapsed = (System.nanoTime() - startTime) / 1e9;
+        final double hours = seconds.sum() / 3600;
+        final int processed = numRendered.get() + numFailed.get();
+        System.out.printf(Locale.ROOT, "%d rendered, %d failed, %.2f h of audio in %.2f s: %.2f files/s, %.3f audio-hours/s%n",
+            numRendered.get(), numFailed.get(), hours, elapsed, processed / elapsed, hours / elapsed);
+        return numFailed.get() == 0;
+    }
+
+    // The band in fractions of the file's Nyquist frequency
+    private Plan plan(AudioFileFormat fileFormat)
+    {
+        if (band == null)
+        {
+            return plan;
+        }
+        final double nyquist = fileFormat.getFormat().getSampleRate() / 2;
+        if (band[1] > nyquist)
+        {
+            throw new IllegalArgumentException("Band above the Nyquist frequency of " + nyquist + " Hz");
+        }
+        return plan.withBand(band[0] / nyquist, band[1] / nyquist, bins == 0 ? Math.max(2, height) : bins);
+    }
+
+    private void render(Path input, Path output) throws Exception
+    {
+        final File file = input.toFile();
+        final AudioFileFormat fileFormat = Source.getFileFormat(file);
+        final Manager.Context context = new Manager.Context(file, fileFormat, width, 1024 * 32 * 2, mode, plan(fileFormat), height, axis);
+
+        // Read on this (virtual) thread, transform on the scheduler
+        final List<double[]> slices = Collections.synchronizedList(new ArrayList<>());
+        final Sink sink = new Sink() {
+            @Override
+            public boolean publish(double[] slice)
+            {
+                slices.add(slice);
+                return true;
+            }
+
+            @Override
+            public boolean set(int index, double[] slice)
+            {
+                // Previews arrive coarse to fine, filling the list in order first
+                if (index == slices.size())
+                {
+                    slices.add(slice);
+                }
+                else
+                {
+                    slices.set(index, slice);
+                }
+                return true;
+            }
+
+            @Override
+            public void finish()
+            {
+            }
+        };
+        if (preview > 0 && ParallelWorker.isSupported(context.audioFormat, fileFormat.getFrameLength()))
+        {
+            new ProgressiveWorker(context, sink, preview, false, false).run();
+        }
+        else
+        {
+            List<Thread> workers = new ArrayList<>();
+            for (Worker worker : Worker.forTracks(context, sink))
+            {
+                workers.add(Thread.ofVirtual().start(worker));
+            }
+            new Reader(context).run();
+            for (Thread worker : workers)
+            {
+                worker.join();
+            }
+        }
+        if (context.getFailure() != null)
+        {
+            throw new IOException(context.getFailure().getMessage(), context.getFailure());
+        }
+        if (slices.isEmpty())
+        {
+            throw new IOException("No audio data");
+        }
+
+        // Render & write image, slices already have a value per pixel row
+        final Renderer renderer = new Renderer(Colormap.hot());
+        renderer.setTracks(context.tracks);
+        final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        final int[] column = new int[height];
+        for (int x = 0; x < width; x++)
+        {
+            if (renderer.column(slices, context.columns, x, width, column, height))
+            {
+                image.setRGB(x, 0, 1, height, column, 0, 1);
+            }
+        }
+        if (output.getParent() != null)
+        {
+            Files.createDirectories(output.getParent());
+        }
+        ImageIO.write(image, "png", output.toFile());
+
+        numRendered.incrementAndGet();
+        if (fileFormat.getFrameLength() != AudioSystem.NOT_SPECIFIED)
+        {
+            seconds.add(fileFormat.getFrameLength() / (double)context.audioFormat.getFrameRate());
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.example;
+
+// Precomputed mapping of the bins of a spectrum (lowest first) to rows of a
+// display (lowest first) on a linear, log or mel frequency axis. The bins
+// span the whole range up to the Nyquist frequency, or a band of it. Rows are
+// spaced evenly on the axis over the fraction [low, high) of it; each row
+// averages the bins whose centre it covers, or shows the bin under it if it
+// is narrower than a bin. Every row covers one range of consecutive bins, so
+// the mapping is a band matrix kept as two arrays.
+public final class BinMap
+{
+    public enum Axis
+    {
+        LINEAR("Linear"),
+        LOG("Log"),
+        MEL("Mel");
+
+        private static final double MIN_FREQUENCY = 20; // Hz, lower end of the log axis
+
+        private final String label;
+
+        Axis(String label)
+        {
+            this.label = label;
+        }
+
+        @Override
+        public String toString()
+        {
+            return label;
+        }
+
+        // Fraction of the frequency range [0, nyquist) at the fraction u of
+        // an axis over [from, to] of it, the lowest shown frequency being at
+        // least one bin wide
+        double frequency(double u, double nyquist, int bins, double from, double to)
+        {
+            switch (this)
+            {
+                case LOG:
+                    final double min = Math.max(from, Math.min(to, Math.max(MIN_FREQUENCY / nyquist, (to - from) / bins)));
+                    return min * Math.pow(to / min, u);
+                case MEL:
+                    final double m = mel(from * nyquist) + u * (mel(to * nyquist) - mel(from * nyquist));
+                    return 700 * (Math.pow(10, m / 2595) - 1) / nyquist;
+                default:
+                    return from + u * (to - from);
+            }
+        }
+
+        private static double mel(double hz)
+        {
+            return 2595 * Math.log10(1 + hz / 700);
+        }
+    }
+
+    private final Axis axis;
+    private final int bins;
+    private final float sampleRate;
+    private final double low;
+    private final double high;
+    private final double lowest; // Band of the bins, fractions of the Nyquist frequency
+    private final double highest;
+    private final int[] first; // Per row
+    private final int[] count;
+
+    private BinMap(Axis axis, int bins, int rows, float sampleRate, double low, double high, double lowest, double highest)
+    {
+        this.axis = axis;
+        this.bins = bins;
+        this.sampleRate = sampleRate;
+        this.low = low;
+        this.high = high;
+        this.lowest = lowest;
+        this.highest = highest;
+        this.first = new int[rows];
+        this.count = new int[rows];
+
+        final double nyquist = sampleRate / 2;
+        double start = bin(axis.frequency(low, nyquist, bins, lowest, highest));
+        for (int r = 0; r < rows; r++)
+        {
+            final double end = bin(axis.frequency(low + (high - low) * (r + 1) / rows, nyquist, bins, lowest, highest));
+            int from = (int)Math.ceil(start - 0.5);
+            int to = (int)Math.ceil(end - 0.5);
+            if (to <= from)
+            {
+                from = (int)start;
+                to = from + 1;
+            }
+            from = Math.clamp(from, 0, bins - 1);
+            to = Math.clamp(to, from + 1, bins);
+            first[r] = from;
+            count[r] = to - from;
+            start = end;
+        }
+    }
+
+    // Position of a frequency (fraction of the Nyquist frequency) in bins
+    private double bin(double frequency)
+    {
+        return (frequency - lowest) / (highest - lowest) * bins;
+    }
+
+    // Bins spanning the band [lowest, highest] of the frequency range
+    public static BinMap of(Axis axis, int bins, int rows, float sampleRate, double low, double high, double lowest, double highest)
+    {
+        if (bins < 1 || rows < 1)
+        {
+            throw new IllegalArgumentException("Bins and rows must be positive: " + bins + ", " + rows);
+        }
+        return new BinMap(axis, bins, rows, sampleRate, low, high, lowest, highest);
+    }
+
+    public static BinMap of(Axis axis, int bins, int rows, float sampleRate, double low, double high)
+    {
+        return of(axis, bins, rows, sampleRate, low, high, 0, 1);
+    }
+
+    // The whole axis
+    public static BinMap of(Axis axis, int bins, int rows, float sampleRate)
+    {
+        return of(axis, bins, rows, sampleRate, 0, 1);
+    }
+
+    // Whether this is the mapping for the given parameters
+    public boolean matches(Axis axis, int bins, int rows, float sampleRate, double low, double high, double lowest, double highest)
+    {
+        return this.axis == axis && this.bins == bins && first.length == rows && this.sampleRate == sampleRate
+            && this.low == low && this.high == high && this.lowest == lowest && this.highest == highest;
+    }
+
+    public int bins()
+    {
+        return bins;
+    }
+
+    public int rows()
+    {
+        return first.length;
+    }
+
+    // Reduce the bins [from, from + bins) of a spectrum to rows
+    // [offset, offset + rows) of out
+    public void apply(double[] spectrum, int from, double[] out, int offset)
+    {
+        for (int r = 0; r < first.length; r++)
+        {
+            final int start = from + first[r];
+            final int n = count[r];
+            if (n == 1)
+            {
+                out[offset + r] = spectrum[start];
+                continue;
+            }
+            double sum = 0;
+            for (int i = start; i < start + n; i++)
+            {
+                sum += spectrum[i];
+            }
+            out[offset + r] = sum / n;
+        }
+    }
+}
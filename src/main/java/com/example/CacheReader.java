@@ -0,0 +1,38 @@
+package com.example;
+
+// Streams the columns of a disk cache entry to the UI instead of analysing
+// the file
+public class CacheReader implements Runnable
+{
+    final Manager.Context context;
+    final Sink sink;
+    final DiskCache.Entry entry;
+
+    public CacheReader(Manager.Context c, Sink s, DiskCache.Entry e)
+    {
+        this.context = c;
+        this.sink = s;
+        this.entry = e;
+    }
+
+    @Override
+    public void run()
+    {
+        try
+        {
+            for (int i = 0; i < entry.count; i++)
+            {
+                if (!context.isRunning() || !sink.publish(entry.column(i)))
+                {
+                    return;
+                }
+                context.metrics.addSlices(1);
+            }
+            sink.finish();
+        }
+        catch (InterruptedException e)
+        {
+            return;
+        }
+    }
+}
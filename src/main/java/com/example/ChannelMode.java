@@ -0,0 +1,93 @@
+package com.example;
+
+import java.io.IOException;
+
+// Which spectrograms (tracks) to compute from the channels of a file. All
+// channels are decoded in the same pass; several tracks are joined into one
+// slice per column, track 0 first, and shown stacked top to bottom.
+public enum ChannelMode
+{
+    FIRST("First channel"),
+    STACKED("All channels"),
+    MID_SIDE("Mid/side");
+
+    private final String label;
+
+    ChannelMode(String label)
+    {
+        this.label = label;
+    }
+
+    @Override
+    public String toString()
+    {
+        return label;
+    }
+
+    public int tracks(int channels)
+    {
+        switch (this)
+        {
+            case STACKED:
+                return Math.max(1, channels);
+            case MID_SIDE:
+                return channels >= 2 ? 2 : 1;
+            default:
+                return 1;
+        }
+    }
+
+    // Buffers for read(), one per track
+    public double[][] buffers(int channels, int length)
+    {
+        return new double[tracks(channels)][length];
+    }
+
+    // Read up to length frames of all tracks, decoding only the channels
+    // needed, returns the number of frames read or -1 at the end of the stream
+    public int read(Source source, double[][] buffers, int offset, int length) throws IOException
+    {
+        if (buffers.length == 1)
+        {
+            return source.read(buffers[0], offset, length, 0);
+        }
+
+        final int numFramesRead = source.read(buffers, offset, length);
+        if (this == MID_SIDE && numFramesRead > 0)
+        {
+            final double[] left = buffers[0];
+            final double[] right = buffers[1];
+            for (int i = offset; i < offset + numFramesRead; i++)
+            {
+                final double l = left[i];
+                final double r = right[i];
+                left[i] = (l + r) / 2;
+                right[i] = (l - r) / 2;
+            }
+        }
+        return numFramesRead;
+    }
+
+    // One slice holding the slices of all tracks one after the other
+    public static double[] join(double[][] slices)
+    {
+        if (slices.length == 1)
+        {
+            return slices[0];
+        }
+
+        int length = 0;
+        for (double[] slice : slices)
+        {
+            length += slice.length;
+        }
+        double[] joined = new double[length];
+        int offset = 0;
+        for (double[] slice : slices)
+        {
+            System.arraycopy(slice, 0, joined, offset, slice.length);
+            offset += slice.length;
+        }
+        return joined;
+    }
+}
@@ -0,0 +1,203 @@
+package com.example;
+
+// Chirp-Z transform of n real samples: m bins spread evenly over the band
+// [low, high] (fractions of the Nyquist frequency, both ends included) and
+// nothing else. Bluestein's algorithm turns the DFT sum into a convolution
+// with a chirp, X_k = w_k * sum_j (x_j * a_j) * b_(k - j), which is done with
+// complex FFTs of a power of two size of at least j + m - 1 for j samples.
+// Longer inputs are split into segments (whose results only differ by a
+// phase per bin) so that the FFTs stay close to the number of bins: zooming
+// into a narrow band at a fine bin spacing costs about n * log(m), instead
+// of an FFT large enough for that spacing over the whole range.
+// https://en.wikipedia.org/wiki/Chirp_Z-transform#Bluestein's_algorithm
+public class ChirpZ implements Transform
+{
+    private final int n;
+    private final int m;
+    private final int size; // Of the FFTs
+    private final int length; // Samples per segment
+    private final FFT fft;
+    private final double[] inCos; // a_j = exp(-i * (w0 * j + dw * j^2 / 2)), j < length
+    private final double[] inSin;
+    private final double[] outCos; // Per segment s & bin k: w_k * exp(-i * w_k * s * length)
+    private final double[] outSin;
+    private final double[] kernelRe; // FFT of b_t = exp(i * dw * t^2 / 2), -length < t < m, / size
+    private final double[] kernelIm;
+    private final double[] zr;
+    private final double[] zi;
+
+    public ChirpZ(int n, int m, double low, double high)
+    {
+        if (n < 1 || m < 2)
+        {
+            throw new IllegalArgumentException("Chirp-Z needs at least one sample and two bins: " + n + ", " + m);
+        }
+        if (!(low >= 0 && low < high && high <= 1))
+        {
+            throw new IllegalArgumentException("Band must be within [0, 1] of the Nyquist frequency: " + low + ", " + high);
+        }
+        this.n = n;
+        this.m = m;
+
+        // Two FFTs per segment, pick the size with the least work in total
+        int bestSize = 0;
+        double bestCost = Double.MAX_VALUE;
+        for (int l = Integer.highestOneBit(m) << 1; ; l <<= 1)
+        {
+            final int segments = (n + l - m) / (l - m + 1);
+            final double cost = segments * (2.0 * l * Integer.numberOfTrailingZeros(l) + m);
+            if (cost < bestCost)
+            {
+                bestSize = l;
+                bestCost = cost;
+            }
+            if (l - m + 1 >= n)
+            {
+                break;
+            }
+        }
+        this.size = bestSize;
+        this.length = Math.min(n, size - m + 1);
+        this.fft = new FFT(size);
+        final int segments = (n + length - 1) / length;
+
+        // Angular frequency of the first bin & between bins, in radians per sample
+        final double w0 = Math.PI * low;
+        final double dw = Math.PI * (high - low) / (m - 1);
+        this.inCos = new double[length];
+        this.inSin = new double[length];
+        for (int j = 0; j < length; j++)
+        {
+            final double arg = -(w0 * j + dw * ((double)j * j) / 2);
+            inCos[j] = Math.cos(arg);
+            inSin[j] = Math.sin(arg);
+        }
+        this.outCos = new double[segments * m];
+        this.outSin = new double[segments * m];
+        for (int s = 0; s < segments; s++)
+        {
+            for (int k = 0; k < m; k++)
+            {
+                final double arg = -(dw * ((double)k * k) / 2 + (w0 + k * dw) * ((double)s * length));
+                outCos[s * m + k] = Math.cos(arg);
+                outSin[s * m + k] = Math.sin(arg);
+            }
+        }
+
+        // Negative t wrap around, the convolution being circular
+        this.kernelRe = new double[size];
+        this.kernelIm = new double[size];
+        for (int t = -(length - 1); t < m; t++)
+        {
+            final double arg = dw * ((double)t * t) / 2;
+            final int i = t < 0 ? size + t : t;
+            kernelRe[i] = Math.cos(arg);
+            kernelIm[i] = Math.sin(arg);
+        }
+        fft.transform(kernelRe, kernelIm);
+        for (int i = 0; i < size; i++)
+        {
+            kernelRe[i] /= size;
+            kernelIm[i] /= size;
+        }
+        this.zr = new double[size];
+        this.zi = new double[size];
+    }
+
+    // Same parameters & (immutable) tables, own scratch buffers
+    private ChirpZ(ChirpZ other)
+    {
+        this.n = other.n;
+        this.m = other.m;
+        this.size = other.size;
+        this.length = other.length;
+        this.fft = other.fft;
+        this.inCos = other.inCos;
+        this.inSin = other.inSin;
+        this.outCos = other.outCos;
+        this.outSin = other.outSin;
+        this.kernelRe = other.kernelRe;
+        this.kernelIm = other.kernelIm;
+        this.zr = new double[size];
+        this.zi = new double[size];
+    }
+
+    @Override
+    public ChirpZ copy()
+    {
+        return new ChirpZ(this);
+    }
+
+    @Override
+    public int size()
+    {
+        return n;
+    }
+
+    @Override
+    public int bins()
+    {
+        return m;
+    }
+
+    // Size of the FFTs, two per segment
+    public int fftSize()
+    {
+        return size;
+    }
+
+    public int segments()
+    {
+        return outCos.length / m;
+    }
+
+    @Override
+    public void transform(double[] in, double[] re, double[] im)
+    {
+        for (int k = 0; k < m; k++)
+        {
+            re[k] = 0;
+            im[k] = 0;
+        }
+        for (int first = 0, s = 0; first < n; first += length, s++)
+        {
+            // Premultiply by the chirp, zero padded
+            final int count = Math.min(length, n - first);
+            for (int j = 0; j < count; j++)
+            {
+                zr[j] = in[first + j] * inCos[j];
+                zi[j] = in[first + j] * inSin[j];
+            }
+            for (int j = count; j < size; j++)
+            {
+                zr[j] = 0;
+                zi[j] = 0;
+            }
+
+            // Convolve: multiply by the kernel's spectrum & transform back,
+            // the inverse FFT being the conjugate of the FFT of the conjugate
+            fft.transform(zr, zi);
+            for (int i = 0; i < size; i++)
+            {
+                final double r = zr[i] * kernelRe[i] - zi[i] * kernelIm[i];
+                final double q = zr[i] * kernelIm[i] + zi[i] * kernelRe[i];
+                zr[i] = r;
+                zi[i] = -q;
+            }
+            fft.transform(zr, zi);
+
+            // Add the (conjugated back) first m values, postmultiplied by
+            // the chirp & the phase of the segment
+            final int offset = s * m;
+            for (int k = 0; k < m; k++)
+            {
+                final double yr = zr[k];
+                final double yi = -zi[k];
+                final double c = outCos[offset + k];
+                final double d = outSin[offset + k];
+                re[k] += c * yr - d * yi;
+                im[k] += c * yi + d * yr;
+            }
+        }
+    }
+}
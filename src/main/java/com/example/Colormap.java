@@ -0,0 +1,54 @@
+package com.example;
+
+// Maps normalised values in [0, 1] to packed ARGB colours through a
+// precomputed 256-entry lookup table
+public class Colormap
+{
+    public static final int SIZE = 256;
+
+    private final int[] lut;
+
+    private Colormap(int[] lut)
+    {
+        this.lut = lut;
+    }
+
+    // https://octave.sourceforge.io/octave/function/hot.html
+    public static Colormap hot()
+    {
+        int[] lut = new int[SIZE];
+        for (int n = 0; n < SIZE; n++)
+        {
+            double r = Math.clamp(1.0/96.0 * n, 0.0, 1.0);
+            double g = Math.clamp(1.0/96.0 * (n - 96), 0.0, 1.0);
+            double b = Math.clamp(1.0/63.0 * (n - 192), 0.0, 1.0);
+            lut[n] = argb(r, g, b);
+        }
+        return new Colormap(lut);
+    }
+
+    private static int argb(double r, double g, double b)
+    {
+        return 0xFF000000
+            | (int)Math.round(r * 255) << 16
+            | (int)Math.round(g * 255) << 8
+            | (int)Math.round(b * 255);
+    }
+
+    public int get(double value)
+    {
+        // NaN maps to 0 through the cast
+        int n = (int)(value * SIZE); // [0, 255]
+        return lut[Math.clamp(n, 0, SIZE - 1)];
+    }
+
+    // Fill the pixels [y, y + height) (top to bottom) from display rows
+    // values[0, height) (lowest first), see BinMap
+    public void rows(double[] values, int[] pixels, int y, int height)
+    {
+        for (int i = 0; i < height; i++)
+        {
+            pixels[y + i] = get(values[height - 1 - i]);
+        }
+    }
+}
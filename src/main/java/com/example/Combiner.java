@@ -0,0 +1,86 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Joins the slices of several tracks, each produced by its own Worker, into
+// one slice per column which is published in order once all tracks have
+// delivered it. Workers never get far apart: they are fed in lockstep by
+// one Reader, so at most a ring buffer's worth of columns is pending.
+public class Combiner
+{
+    private final Sink sink;
+    private final int tracks;
+    private final List<double[][]> pending = new ArrayList<>(); // From the first unpublished column
+    private final int[] received; // Per track, relative to the first pending column
+    private int numFinished = 0;
+
+    public Combiner(Sink sink, int tracks)
+    {
+        this.sink = sink;
+        this.tracks = tracks;
+        this.received = new int[tracks];
+    }
+
+    // Sink for the slices of one track
+    public Sink track(int track)
+    {
+        return new Sink() {
+            @Override
+            public boolean publish(double[] slice) throws InterruptedException
+            {
+                return add(track, slice);
+            }
+
+            @Override
+            public void finish()
+            {
+                Combiner.this.finish();
+            }
+        };
+    }
+
+    private synchronized boolean add(int track, double[] slice) throws InterruptedException
+    {
+        final int column = received[track]++;
+        while (pending.size() <= column)
+        {
+            pending.add(new double[tracks][]);
+        }
+        pending.get(column)[track] = slice;
+
+        // Publish completed columns
+        while (!pending.isEmpty() && isComplete(pending.get(0)))
+        {
+            if (!sink.publish(ChannelMode.join(pending.remove(0))))
+            {
+                return false;
+            }
+            for (int t = 0; t < tracks; t++)
+            {
+                received[t]--;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isComplete(double[][] parts)
+    {
+        for (double[] part : parts)
+        {
+            if (part == null)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized void finish()
+    {
+        if (++numFinished == tracks)
+        {
+            sink.finish();
+        }
+    }
+}
@@ -1,62 +1,155 @@
 package com.example;
 
 import java.io.File;
+import java.io.InputStream;
+import java.nio.IntBuffer;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 
 import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioFormat;
-import javax.sound.sampled.AudioSystem;
 
 
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.event.EventHandler;
 import javafx.application.Platform;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.beans.value.ChangeListener;
 import javafx.beans.value.ObservableValue;
 import javafx.collections.ListChangeListener;
-import javafx.collections.ObservableList;
 import javafx.concurrent.WorkerStateEvent;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.scene.canvas.Canvas;
-import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Button;
+import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
+import javafx.scene.control.ToggleButton;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import javafx.scene.input.DragEvent;
 import javafx.scene.input.Dragboard;
+import javafx.scene.input.MouseButton;
 import javafx.scene.input.MouseEvent;
+import javafx.scene.input.ScrollEvent;
 import javafx.scene.input.TransferMode;
 import javafx.scene.layout.Pane;
 import javafx.scene.paint.Color;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 
 public class Controller implements ListChangeListener<double[]>
 {
     @FXML
     private Button button;
 
+    @FXML
+    private ChoiceBox<ChannelMode> channels;
+
+    @FXML
+    private ChoiceBox<Plan.Window> windows;
+
+    @FXML
+    private ChoiceBox<Integer> sizes;
+
+    @FXML
+    private ChoiceBox<BinMap.Axis> axes;
+
+    @FXML
+    private ToggleButton band;
+
     @FXML
     private Label label;
 
     @FXML
     private Pane pane;
 
-    private Canvas canvas = new Canvas();
+    private ImageView view = new ImageView();
+    private WritableImage image;
+    private int[] column = new int[0];
+    private Renderer renderer = new Renderer(Colormap.hot());
     private Manager manager = new Manager();
+    private Viewport viewport = new Viewport();
+    private TileCache tiles = new TileCache(64);
     private File file;
+    private Label overlay = new Label();
+    private LiveView live;
+    private LiveWorker liveWorker;
+    private ReadOnlyStringWrapper title = new ReadOnlyStringWrapper("No file");
 
     @FXML
     protected void initialize() 
     {
-        this.canvas.widthProperty().bind(pane.widthProperty());
-        this.canvas.heightProperty().bind(pane.heightProperty());
-        pane.getChildren().add(this.canvas);
-        
-        // Re-start manager on canvas resize
+        // Image is sized to the pane, so it mustn't affect the pane's size
+        this.view.setManaged(false);
+        pane.getChildren().add(this.view);
+
+        // Re-analyse the current file when the channel mode or plan changes
+        channels.getItems().setAll(ChannelMode.values());
+        channels.setValue(manager.getChannelMode());
+        channels.valueProperty().addListener((observable, oldValue, newValue) -> {
+            manager.setChannelMode(newValue);
+            reload();
+        });
+        windows.getItems().setAll(Plan.Window.values());
+        windows.setValue(manager.getPlan().window);
+        windows.valueProperty().addListener((observable, oldValue, newValue) -> {
+            manager.setPlan(manager.getPlan().withWindow(newValue));
+            reload();
+        });
+        for (int size : Plan.SIZES)
+        {
+            sizes.getItems().add(size);
+        }
+        sizes.setValue(manager.getPlan().fftSize);
+        sizes.valueProperty().addListener((observable, oldValue, newValue) -> {
+            manager.setPlan(manager.getPlan().withFFTSize(newValue));
+            reload();
+        });
+
+        // Band zoom: re-analyse only the frequencies shown, at one bin per
+        // pixel row, with a chirp-Z transform of the same samples
+        band.selectedProperty().addListener((observable, oldValue, newValue) -> {
+            final Plan plan = newValue ? bandPlan() : manager.getPlan().withoutBand();
+            if (newValue && !plan.isBand())
+            {
+                band.setSelected(false); // Nothing to zoom into
+            }
+            else if (plan != manager.getPlan())
+            {
+                manager.setPlan(plan);
+                reload();
+            }
+        });
+
+        // The frequency axis only affects drawing
+        axes.getItems().setAll(BinMap.Axis.values());
+        axes.setValue(renderer.getAxis());
+        axes.valueProperty().addListener((observable, oldValue, newValue) -> {
+            renderer.setAxis(newValue);
+            redraw();
+        });
+
+        // Optional pipeline metrics, enabled with -Djspect.metrics=true
+        if (Boolean.getBoolean("jspect.metrics"))
+        {
+            overlay.setManaged(false);
+            overlay.setStyle("-fx-background-color: rgba(0, 0, 0, 0.6); -fx-text-fill: white; -fx-padding: 4; -fx-font-family: monospace;");
+            overlay.relocate(4, 4);
+            pane.getChildren().add(overlay);
+            Timeline timeline = new Timeline(new KeyFrame(Duration.seconds(1), e -> updateOverlay()));
+            timeline.setCycleCount(Timeline.INDEFINITE);
+            timeline.play();
+        }
+
+        // Re-sample the slices on pane resize, there's no need to re-analyse
         manager.getSlices().addListener(this);
-        Controller controller = this;
         ChangeListener<Number> listener = new ChangeListener<Number>() {
             final Timer timer = new Timer();
             TimerTask task = null;
@@ -78,7 +171,7 @@ public class Controller implements ListChangeListener<double[]>
                         Platform.runLater(new Runnable() {
                             @Override
                             public void run() {
-                                loadFile(controller.file);
+                                redraw();
                             }
                         });
                     }
@@ -86,8 +179,35 @@ public class Controller implements ListChangeListener<double[]>
                 timer.schedule(task, 200);
             }
         };
-        canvas.widthProperty().addListener(listener);
-        canvas.heightProperty().addListener(listener);
+        pane.widthProperty().addListener(listener);
+        pane.heightProperty().addListener(listener);
+    }
+
+    // File name or what else is shown, e.g. for a tab
+    public ReadOnlyStringProperty titleProperty()
+    {
+        return title.getReadOnlyProperty();
+    }
+
+    public boolean open(File file)
+    {
+        return loadFile(file);
+    }
+
+    // Whether this view is shown, e.g. in the selected tab. Analysis of
+    // hidden views yields to that of the visible one.
+    public void setVisible(boolean value)
+    {
+        manager.setVisible(value);
+        tiles.setPriority(value ? Scheduler.Priority.VISIBLE : Scheduler.Priority.BACKGROUND);
+    }
+
+    // Stop all work of this view for good
+    public void close()
+    {
+        stopLive();
+        manager.stop();
+        tiles.cancel();
     }
 
     @FXML
@@ -98,7 +218,8 @@ public class Controller implements ListChangeListener<double[]>
         fileChooser.setTitle("Open audio file");
         fileChooser.getExtensionFilters().addAll(
             new FileChooser.ExtensionFilter("All Audio", "*.*"),
-            new FileChooser.ExtensionFilter("WAV", "*.wav")
+            new FileChooser.ExtensionFilter("WAV", "*.wav"),
+            new FileChooser.ExtensionFilter("FLAC", "*.flac")
         );
         File file = fileChooser.showOpenDialog(stage);
         loadFile(file);
@@ -141,6 +262,64 @@ public class Controller implements ListChangeListener<double[]>
         event.consume();
     }
 
+    @FXML
+    private void handleScroll(ScrollEvent event)
+    {
+        if (manager.getContext() == null || live != null)
+        {
+            return;
+        }
+
+        final double x = event.getX() / pane.getWidth();
+        final double y = 1 - event.getY() / pane.getHeight();
+        final double delta = event.getDeltaY() != 0 ? event.getDeltaY() : event.getDeltaX();
+        if (event.isControlDown())
+        {
+            // Zoom frequency axis around the cursor
+            viewport.zoomFrequency(Math.exp(-delta / 400), y);
+        }
+        else if (event.isShiftDown() || Math.abs(event.getDeltaX()) > Math.abs(event.getDeltaY()))
+        {
+            // Pan time axis
+            viewport.pan(-delta / pane.getWidth());
+        }
+        else
+        {
+            // Zoom time axis around the cursor
+            viewport.zoom(Math.exp(-delta / 400), x);
+        }
+        redraw();
+        event.consume();
+    }
+
+    @FXML
+    private void handleMouseClicked(MouseEvent event)
+    {
+        // Double-click shows the whole file again
+        if (event.getButton() == MouseButton.PRIMARY && event.getClickCount() == 2 && manager.getContext() != null && live == null)
+        {
+            viewport.reset(manager.getContext().fileFormat.getFrameLength());
+            redraw();
+        }
+    }
+
+    // The plan limited to the frequencies in view
+    private Plan bandPlan()
+    {
+        final Plan plan = manager.getPlan();
+        final Manager.Context context = manager.getContext();
+        if (context == null)
+        {
+            return plan;
+        }
+        final double nyquist = context.audioFormat.getSampleRate() / 2;
+        final BinMap.Axis axis = renderer.getAxis();
+        final double low = axis.frequency(viewport.getLow(), nyquist, plan.bins(), plan.low, plan.high);
+        final double high = axis.frequency(viewport.getHigh(), nyquist, plan.bins(), plan.low, plan.high);
+        // A bin per pixel row of a track, the renderer splits the height
+        return high > low ? plan.withBand(low, high, Math.max(2, (int)pane.getHeight() / context.tracks)) : plan;
+    }
+
     private void setError(String message)
     {
         label.setText(message);
@@ -153,20 +332,46 @@ public class Controller implements ListChangeListener<double[]>
         label.setTextFill(Color.BLACK);
     }
 
+    private void reload()
+    {
+        if (file != null && live == null)
+        {
+            loadFile(file);
+        }
+    }
+
     private boolean loadFile(File file)
     {
+        // Another file starts out with all frequencies
+        if (file != this.file && manager.getPlan().isBand())
+        {
+            manager.setPlan(manager.getPlan().withoutBand());
+            band.setSelected(false);
+        }
         this.file = file;
+        stopLive();
         manager.stop();
+        tiles.cancel();
+        resetImage();
         if (file != null)
         {
             try
             {
                 // Check file format
-                AudioFileFormat fileFormat = AudioSystem.getAudioFileFormat(file);
+                AudioFileFormat fileFormat = Source.getFileFormat(file);
                 
                 // Start background threads
-                manager.start(file, fileFormat, (int)canvas.getWidth());
-                
+                manager.start(file, fileFormat);
+                viewport.reset(fileFormat.getFrameLength());
+                renderer.setRange(0, 1);
+                renderer.setBand(manager.getPlan().low, manager.getPlan().high);
+                renderer.setTracks(manager.getContext().tracks);
+                renderer.setSampleRate(fileFormat.getFormat().getSampleRate());
+
+                // A cached result was already drawn by start(), with the
+                // settings of the previous file
+                redraw();
+
                 // Update label
                 AudioFormat format = fileFormat.getFormat();
                 StringBuilder sb = new StringBuilder();
@@ -191,6 +396,7 @@ public class Controller implements ListChangeListener<double[]>
                         break;
                 }
                 setInfo(sb.toString());
+                title.set(file.getName());
 
                 return true;
             }
@@ -203,49 +409,216 @@ public class Controller implements ListChangeListener<double[]>
         else
         {
             setInfo("No file selected");
+            title.set("No file");
         }
 
         return false;
     }
 
-    // https://octave.sourceforge.io/octave/function/hot.html
-    private Color getFill(double i)
+    private void updateOverlay()
     {
-        int n = (int)Math.floor(i * 256.0); // [0, 255]
-        double r = Math.clamp(1.0/96.0 * n, 0.0, 1.0);
-        double g = Math.clamp(1.0/96.0 * (n - 96), 0.0, 1.0);
-        double b = Math.clamp(1.0/63.0 * (n - 192), 0.0, 1.0);
-        return new Color(r, g, b, 1);
+        final Metrics metrics = live != null ? liveWorker.getMetrics() : manager.getMetrics();
+        if (metrics == null)
+        {
+            overlay.setText("No file");
+        }
+        else
+        {
+            Metrics.Snapshot s = metrics.sample();
+            String text = String.format(
+                "read    %8.1f MB/s%n" +
+                "fft     %8.0f /s%n" +
+                "slices  %8.0f /s  (%d)%n" +
+                "waiting reader %3.0f%%  worker %3.0f%%%n" +
+                "buffer  %8d samples%n" +
+                "backlog %8d slices",
+                s.bytesPerSecond() / 1e6, s.transformsPerSecond(), s.slicesPerSecond(), s.slices(),
+                s.readerWait() * 100, s.workerWait() * 100, s.bufferOccupancy(), s.backlog());
+            if (live != null)
+            {
+                text += String.format("%nlatency %8.1f ms  (%d dropped)", live.getLatency() / 1e6, live.getDropped());
+            }
+            overlay.setText(text);
+        }
+        overlay.autosize();
     }
 
-    @Override
-    public void onChanged(Change<? extends double[]> change)
+    // Show a scrolling spectrogram of raw PCM from the stream until another
+    // file is opened
+    public void startLive(InputStream in, AudioFormat format)
+    {
+        stopLive();
+        manager.stop();
+        tiles.cancel();
+        view.setVisible(false);
+        renderer.setRange(0, 1);
+        renderer.setBand(0, 1);
+        renderer.setTracks(1); // First channel only
+        renderer.setSampleRate(format.getSampleRate());
+
+        live = new LiveView(pane, renderer);
+        liveWorker = new LiveWorker(in, format, manager.getPlan().withoutBand(), live);
+        liveWorker.getMetrics().setBacklog(live::getBacklog);
+        live.open();
+        liveWorker.start();
+        setInfo("Live: " + format);
+        title.set("Live");
+    }
+
+    private void stopLive()
     {
-        final double width = canvas.getWidth();
-        final double height = canvas.getHeight();
+        if (live != null)
+        {
+            liveWorker.close();
+            live.close();
+            live = null;
+            liveWorker = null;
+            view.setVisible(true);
+        }
+    }
 
-        GraphicsContext gc = this.canvas.getGraphicsContext2D();
-        change.next();
+    // Blank backing store matching the size of the pane
+    private void resetImage()
+    {
+        final int width = Math.max(1, (int)pane.getWidth());
+        final int height = Math.max(1, (int)pane.getHeight());
+        image = new WritableImage(width, height);
+        column = new int[height];
+        view.setImage(image);
+    }
 
-        // List was cleared
-        if (change.wasRemoved())
+    // Draw the pixel columns [from, to) from the slices available so far
+    private void draw(int from, int to)
+    {
+        renderer.setRange(viewport.getLow(), viewport.getHigh());
+        if (viewport.isZoomed())
         {
-            gc.clearRect(0, 0, width, height);
+            drawZoomed();
             return;
         }
 
-        // Slices were added
-        ObservableList<? extends double[]> list = change.getList();
-        for (int i = change.getFrom(); i < change.getTo(); i++)
+        final int width = (int)image.getWidth();
+        final int height = (int)image.getHeight();
+        final int columns = manager.getColumns();
+        final PixelFormat<IntBuffer> format = PixelFormat.getIntArgbInstance();
+        final SliceStore slices = manager.getStore();
+        if (slices == null)
         {
-            double[] slice = list.get(i);
-            int n = slice.length / 2;
-            double h = height / n;
-            for (int j = 0; j < n; j++)
+            return;
+        }
+        Events.Draw event = new Events.Draw();
+        event.begin();
+        for (int x = from; x < to; x++)
+        {
+            if (renderer.column(slices, columns, x, width, column, height))
+            {
+                image.getPixelWriter().setPixels(x, 0, 1, height, format, column, 0, 1);
+                event.columns++;
+            }
+        }
+        event.commit();
+    }
+
+    // Draw the visible range from tiles analysed at the zoom level, showing
+    // the overview until a tile is ready
+    private void drawZoomed()
+    {
+        final Manager.Context context = manager.getContext();
+        final long numFrames = context.fileFormat.getFrameLength();
+        final int width = (int)image.getWidth();
+        final int height = (int)image.getHeight();
+        final double start = viewport.getStart();
+        final double span = viewport.getEnd() - start;
+        final int level = TileCache.level((long)span, width);
+        final long framesPerColumn = 1L << level;
+        final long framesPerTile = framesPerColumn * TileCache.TILE_COLUMNS;
+
+        // Only analyse what's visible, then the tiles either side of it in
+        // case the view is panned
+        Set<TileCache.Key> visible = new HashSet<>();
+        final long first = (long)(start / framesPerTile);
+        long end = first;
+        for (; end * framesPerTile < start + span; end++)
+        {
+            visible.add(TileCache.key(context.file, context.plan, context.mode, level, end));
+        }
+        tiles.setVisible(visible);
+        if (first > 0)
+        {
+            tiles.prefetch(TileCache.key(context.file, context.plan, context.mode, level, first - 1), numFrames);
+        }
+        if (end * framesPerTile < numFrames)
+        {
+            tiles.prefetch(TileCache.key(context.file, context.plan, context.mode, level, end), numFrames);
+        }
+
+        final PixelFormat<IntBuffer> format = PixelFormat.getIntArgbInstance();
+        final List<double[]> slices = manager.getSlices();
+        final Runnable onLoaded = () -> draw(0, (int)image.getWidth());
+        Events.Draw event = new Events.Draw();
+        event.begin();
+        event.zoomed = true;
+        for (int x = 0; x < width; x++)
+        {
+            final double frame = start + (x + 0.5) * span / width;
+            final long index = (long)(frame / framesPerColumn);
+            final TileCache.Key key = TileCache.key(context.file, context.plan, context.mode, level, index / TileCache.TILE_COLUMNS);
+            final List<double[]> tile = tiles.get(key, numFrames, onLoaded);
+            final int i = (int)(index % TileCache.TILE_COLUMNS);
+
+            double[] slice = null;
+            if (tile != null && i < tile.size())
+            {
+                slice = tile.get(i);
+            }
+            else if ((int)(frame / context.samplesPerSlice) < slices.size())
+            {
+                slice = slices.get((int)(frame / context.samplesPerSlice));
+            }
+            if (slice != null)
+            {
+                renderer.column(slice, column, height);
+                image.getPixelWriter().setPixels(x, 0, 1, height, format, column, 0, 1);
+                event.columns++;
+            }
+        }
+        event.commit();
+    }
+
+    private void redraw()
+    {
+        if (live != null)
+        {
+            return; // Live view follows the pane size itself
+        }
+        resetImage();
+        if (manager.getColumns() > 0)
+        {
+            draw(0, (int)image.getWidth());
+        }
+    }
+
+    @Override
+    public void onChanged(Change<? extends double[]> change)
+    {
+        final int width = (int)image.getWidth();
+        final int columns = manager.getColumns();
+        while (change.next())
+        {
+            // List was cleared, image is reset by loadFile()
+            if (!change.wasAdded())
+            {
+                continue;
+            }
+
+            // Slices were added, re-draw the pixel columns showing them
+            if (viewport.isZoomed())
             {
-                gc.setFill(getFill(slice[j]));
-                gc.fillRect(i, height - j * h, 1, h);
+                drawZoomed();
+                return;
             }
+            draw(Renderer.firstPixel(change.getFrom(), columns, width),
+                 Renderer.endPixel(change.getTo(), columns, width));
         }
     }
 }
@@ -0,0 +1,74 @@
+package com.example;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+
+// Interprets interleaved PCM bytes as samples of a single channel
+public class Decoder
+{
+    private final int bytesPerSample;
+    private final int bitsPerSample;
+    private final int frameSize;
+    private final boolean bigEndian;
+    private final boolean signed;
+    private final boolean floating;
+
+    public Decoder(AudioFormat format)
+    {
+        this.bitsPerSample = format.getSampleSizeInBits();
+        this.bytesPerSample = (bitsPerSample + 7) / 8;
+        int frameSize = format.getFrameSize();
+        if (frameSize == AudioSystem.NOT_SPECIFIED)
+        {
+            frameSize = bytesPerSample * Math.max(1, format.getChannels());
+        }
+        this.frameSize = frameSize;
+        this.bigEndian = format.isBigEndian();
+        this.signed = !AudioFormat.Encoding.PCM_UNSIGNED.equals(format.getEncoding());
+        this.floating = AudioFormat.Encoding.PCM_FLOAT.equals(format.getEncoding());
+    }
+
+    public static boolean isSupported(AudioFormat format)
+    {
+        AudioFormat.Encoding encoding = format.getEncoding();
+        int bits = format.getSampleSizeInBits();
+        if (AudioFormat.Encoding.PCM_FLOAT.equals(encoding))
+        {
+            return bits == 32 || bits == 64;
+        }
+        return (AudioFormat.Encoding.PCM_SIGNED.equals(encoding) || AudioFormat.Encoding.PCM_UNSIGNED.equals(encoding))
+            && bits > 0 && bits <= 32;
+    }
+
+    public int getFrameSize()
+    {
+        return frameSize;
+    }
+
+    public double decode(byte[] buffer, int frame, int channel)
+    {
+        final int offset = frame * frameSize + channel * bytesPerSample;
+
+        // Assemble bytes into an unsigned value
+        long value = 0;
+        for (int j = 0; j < bytesPerSample; j++)
+        {
+            int shift = (bigEndian ? bytesPerSample - 1 - j : j) * 8;
+            value |= (long)(buffer[offset + j] & 0xFF) << shift;
+        }
+
+        if (floating)
+        {
+            return bytesPerSample == 4
+                ? Float.intBitsToFloat((int)value)
+                : Double.longBitsToDouble(value);
+        }
+        if (signed)
+        {
+            // Sign-extend
+            final int unused = 64 - bitsPerSample;
+            return (double)((value << unused) >> unused);
+        }
+        return (double)(value - (1L << (bitsPerSample - 1)));
+    }
+}
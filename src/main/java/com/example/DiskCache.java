@@ -0,0 +1,337 @@
+package com.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+// Persistent cache of finished spectrograms, one file per source file &
+// analysis parameters. Files are evicted least recently used first once the
+// directory exceeds its capacity. Columns are stored as the codes of the
+// slice store they were computed in, at its 8 or 16 bits per bin, so a hit
+// is exactly what the analysis produced for a store of that precision.
+//
+// File format (big-endian):
+//   int    magic "JSPC"
+//   int    version
+//   long   source file size
+//   long   source file modification time
+//   byte[] SHA-256 of the source file size, first & last 64 KB
+//   int    chunk size (FFT size)
+//   int    columns
+//   int    bins per column
+//   int    number of columns stored
+//   int    bits per bin, 8 or 16
+//   byte[] columns * bins codes of the slice store: bytes or shorts
+public class DiskCache
+{
+    private static final int MAGIC = 0x4A535043;
+    private static final int VERSION = 2;
+    private static final int HASH_SIZE = 32;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + HASH_SIZE + 4 + 4 + 4 + 4 + 4;
+    private static final int SAMPLE_SIZE = 64 * 1024;
+    private static final String SUFFIX = ".jspc";
+    private static final String PART_SUFFIX = SUFFIX + ".part";
+    private static final long PART_MAX_AGE = 60 * 60 * 1000; // Of a file still being written, ms
+
+    private final Path directory;
+    private final long capacity;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "jspect-cache-writer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public DiskCache(Path directory, long capacity)
+    {
+        this.directory = directory;
+        this.capacity = capacity;
+    }
+
+    public static Path defaultDirectory()
+    {
+        String value = System.getProperty("jspect.cache");
+        if (value != null)
+        {
+            return Path.of(value);
+        }
+        return Path.of(System.getProperty("user.home"), ".cache", "jspect");
+    }
+
+    // Mapped columns of a cache file
+    public static class Entry
+    {
+        public final int columns;
+        public final int bins;
+        public final int count;
+        public final int bits;
+        private final ByteBuffer frames;
+
+        private Entry(int columns, int bins, int count, int bits, ByteBuffer frames)
+        {
+            this.columns = columns;
+            this.bins = bins;
+            this.count = count;
+            this.bits = bits;
+            this.frames = frames;
+        }
+
+        // Decoded like SliceStore.get(), so storing it again gives the same codes
+        public double[] column(int index)
+        {
+            double[] slice = new double[bins];
+            final double step = 1.0 / ((1 << bits) - 1);
+            if (bits == 8)
+            {
+                final int offset = index * bins;
+                for (int i = 0; i < bins; i++)
+                {
+                    slice[i] = (frames.get(offset + i) & 0xFF) * step;
+                }
+            }
+            else
+            {
+                final int offset = index * bins * 2;
+                for (int i = 0; i < bins; i++)
+                {
+                    slice[i] = (frames.getShort(offset + 2 * i) & 0xFFFF) * step;
+                }
+            }
+            return slice;
+        }
+    }
+
+    private Path pathOf(SpectrumCache.Key key)
+    {
+        String id = key.path() + "\n" + key.plan() + "\n" + key.columns() + "\n" + key.mode();
+        byte[] digest = sha256().digest(id.getBytes(StandardCharsets.UTF_8));
+        return directory.resolve(HexFormat.of().formatHex(digest, 0, 16) + SUFFIX);
+    }
+
+    private static MessageDigest sha256()
+    {
+        try
+        {
+            return MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Sampled content hash, cheap enough for multi-GB files
+    private static byte[] hash(File file) throws IOException
+    {
+        MessageDigest digest = sha256();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            final long size = channel.size();
+            digest.update(ByteBuffer.allocate(8).putLong(0, size));
+
+            ByteBuffer buffer = ByteBuffer.allocate(SAMPLE_SIZE);
+            channel.read(buffer, 0);
+            digest.update(buffer.flip());
+            buffer.clear();
+            channel.read(buffer, Math.max(0, size - SAMPLE_SIZE));
+            digest.update(buffer.flip());
+        }
+        return digest.digest();
+    }
+
+    // Returns the cached columns of the given number of bins at the given
+    // bits per bin, or null if there is no valid entry. An entry of another
+    // precision is a miss, to be replaced once the new analysis has finished.
+    public Entry open(SpectrumCache.Key key, int bins, int bits)
+    {
+        final Path path = pathOf(key);
+        if (!Files.isRegularFile(path))
+        {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE)
+            {
+                return null;
+            }
+            ByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            // Validate header
+            byte[] digest = new byte[HASH_SIZE];
+            map.get(24, digest);
+            if (map.getInt(0) != MAGIC
+                || map.getInt(4) != VERSION
+                || map.getLong(8) != key.length()
+                || map.getLong(16) != key.lastModified()
+                || map.getInt(56) != key.plan().fftSize
+                || map.getInt(60) != key.columns()
+                || !Arrays.equals(digest, hash(new File(key.path()))))
+            {
+                Files.deleteIfExists(path);
+                return null;
+            }
+            final int count = map.getInt(68);
+            final int stored = map.getInt(72);
+            if (map.getInt(64) != bins || (stored != 8 && stored != 16) || (long)bins * count * stored / 8 != channel.size() - HEADER_SIZE)
+            {
+                Files.deleteIfExists(path);
+                return null;
+            }
+            if (stored != bits)
+            {
+                return null;
+            }
+
+            // Mark as recently used
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            return new Entry(key.columns(), bins, count, bits, map.slice(HEADER_SIZE, (int)(channel.size() - HEADER_SIZE)));
+        }
+        catch (IOException e)
+        {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // Write the slices of a finished store in the background
+    public void store(SpectrumCache.Key key, SliceStore slices)
+    {
+        writer.execute(() -> {
+            try
+            {
+                write(key, slices);
+                evict();
+            }
+            catch (IOException e)
+            {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    private void write(SpectrumCache.Key key, SliceStore slices) throws IOException
+    {
+        if (slices.size() == 0)
+        {
+            return;
+        }
+        final int bins = slices.bins();
+        final int count = slices.size();
+        final int bits = slices.bits();
+        final long size = HEADER_SIZE + (long)bins * count * bits / 8;
+        if (size > Integer.MAX_VALUE)
+        {
+            return; // Too large for a buffer, or to map
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int)size);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(key.length());
+        buffer.putLong(key.lastModified());
+        buffer.put(hash(new File(key.path())));
+        buffer.putInt(key.plan().fftSize);
+        buffer.putInt(key.columns());
+        buffer.putInt(bins);
+        buffer.putInt(count);
+        buffer.putInt(bits);
+        for (int c = 0; c < count; c++)
+        {
+            buffer.put(slices.column(c));
+        }
+        buffer.flip();
+
+        // Write to a temporary file first so readers never see a partial file
+        Files.createDirectories(directory);
+        final Path path = pathOf(key);
+        final Path temp = Files.createTempFile(directory, "tmp", PART_SUFFIX);
+        try
+        {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE))
+            {
+                while (buffer.hasRemaining())
+                {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temp); // Unless moved
+        }
+    }
+
+    // Delete least recently used files until the directory fits, and
+    // temporary files left behind by a crash (older than any still written
+    // by another instance could be)
+    private void evict() throws IOException
+    {
+        List<Path> files;
+        List<Path> parts;
+        try (Stream<Path> stream = Files.list(directory))
+        {
+            final List<Path> all = stream.toList();
+            files = all.stream().filter(p -> p.toString().endsWith(SUFFIX)).toList();
+            parts = all.stream().filter(p -> p.toString().endsWith(PART_SUFFIX)).toList();
+        }
+        final long now = System.currentTimeMillis();
+        for (Path part : parts)
+        {
+            try
+            {
+                if (now - Files.getLastModifiedTime(part).toMillis() > PART_MAX_AGE)
+                {
+                    Files.deleteIfExists(part);
+                }
+            }
+            catch (IOException e)
+            {
+                // Gone already, or being deleted by another instance
+            }
+        }
+
+        long size = 0;
+        for (Path file : files)
+        {
+            size += Files.size(file);
+        }
+
+        List<Path> oldest = files.stream().sorted(Comparator.comparing(p -> {
+            try
+            {
+                return Files.getLastModifiedTime(p);
+            }
+            catch (IOException e)
+            {
+                return FileTime.fromMillis(0);
+            }
+        })).toList();
+        for (Path file : oldest)
+        {
+            if (size <= capacity)
+            {
+                break;
+            }
+            size -= Files.size(file);
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+// Flight Recorder events for the stages of the pipeline, e.g.
+// java -XX:StartFlightRecording:filename=jspect.jfr ... then
+// jfr print --categories jspect jspect.jfr
+public final class Events
+{
+    private Events() {}
+
+    @Name("com.example.Read")
+    @Label("Read")
+    @Description("Samples read & decoded from the source")
+    @Category("jspect")
+    @StackTrace(false)
+    public static class Read extends Event
+    {
+        @Label("Frames")
+        public int frames;
+
+        @Label("Bytes")
+        @DataAmount
+        public long bytes;
+    }
+
+    @Name("com.example.Wait")
+    @Label("Wait")
+    @Description("Reader waiting for free space or worker waiting for samples")
+    @Category("jspect")
+    @StackTrace(false)
+    @Threshold("100 us")
+    public static class Wait extends Event
+    {
+        @Label("Stage")
+        public String stage;
+    }
+
+    @Name("com.example.Analyse")
+    @Label("Analyse")
+    @Description("Block of samples windowed, transformed & turned into slices")
+    @Category("jspect")
+    @StackTrace(false)
+    public static class Analyse extends Event
+    {
+        @Label("Samples")
+        public int samples;
+
+        @Label("Transforms")
+        public int transforms;
+
+        @Label("Slices")
+        public int slices;
+    }
+
+    @Name("com.example.Publish")
+    @Label("Publish")
+    @Description("Slices added to the list on the FX thread in one pulse")
+    @Category("jspect")
+    @StackTrace(false)
+    public static class Publish extends Event
+    {
+        @Label("Slices")
+        public int slices;
+
+        @Label("Backlog")
+        public int backlog;
+    }
+
+    @Name("com.example.Draw")
+    @Label("Draw")
+    @Description("Pixel columns drawn into the image on the FX thread")
+    @Category("jspect")
+    @StackTrace(false)
+    public static class Draw extends Event
+    {
+        @Label("Columns")
+        public int columns;
+
+        @Label("Zoomed")
+        public boolean zoomed;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example;
+
+// In-place radix-2 FFT on split real/imaginary arrays of a fixed size.
+// Twiddle factors and the bit-reversal permutation are computed once, so
+// transform() allocates nothing and may be called repeatedly on one thread.
+// https://en.wikipedia.org/wiki/Cooley%E2%80%93Tukey_FFT_algorithm
+// https://cp-algorithms.com/algebra/fft.html
+public class FFT
+{
+    private final int n;
+    private final int[] reverse;
+    private final double[] cos;
+    private final double[] sin;
+
+    public FFT(int n)
+    {
+        if (n < 1 || (n & (n - 1)) != 0)
+        {
+            throw new IllegalArgumentException("FFT size must be a power of two: " + n);
+        }
+        this.n = n;
+
+        // Compute log2(n)
+        int lg_n = Integer.numberOfTrailingZeros(n);
+
+        // Bit-reversal table
+        this.reverse = new int[n];
+        for (int i = 0; i < n; i++)
+        {
+            reverse[i] = lg_n == 0 ? 0 : Integer.reverse(i) >>> (32 - lg_n);
+        }
+
+        // Twiddle factors w^k = exp(-2*pi*i*k/n) for k < n/2, the sub-DFT of
+        // length l uses every (n/l)-th entry
+        this.cos = new double[Math.max(1, n / 2)];
+        this.sin = new double[Math.max(1, n / 2)];
+        for (int k = 0; k < n / 2; k++)
+        {
+            double arg = -2 * Math.PI * k / n;
+            cos[k] = Math.cos(arg);
+            sin[k] = Math.sin(arg);
+        }
+    }
+
+    public int size()
+    {
+        return n;
+    }
+
+    public void transform(double[] re, double[] im)
+    {
+        // Bit-reverse copy
+        for (int i = 0; i < n; i++)
+        {
+            int r = reverse[i];
+            if (i < r) // Don't re-swap after half (incl. middle)
+            {
+                double tmp = re[i];
+                re[i] = re[r];
+                re[r] = tmp;
+                tmp = im[i];
+                im[i] = im[r];
+                im[r] = tmp;
+            }
+        }
+
+        for (int l = 2; l <= n; l <<= 1) // length of sub-DFT
+        {
+            final int half = l / 2;
+            final int step = n / l;
+            for (int j = 0; j < n; j += l) // index of sub-DFT
+            {
+                for (int k = 0; k < half; k++)
+                {
+                    final int a = k + j;
+                    final int b = a + half;
+                    final double wr = cos[k * step];
+                    final double wi = sin[k * step];
+                    final double tr = wr * re[b] - wi * im[b]; // O_k * w_k
+                    final double ti = wr * im[b] + wi * re[b];
+                    re[b] = re[a] - tr; // X_{k + l / 2}
+                    im[b] = im[a] - ti;
+                    re[a] += tr; // X_k
+                    im[a] += ti;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,526 @@
+package com.example;
+
+import java.io.IOException;
+
+// Decodes single FLAC frames. Frames are self-contained, so any number of
+// them can be decoded at the same time once their offsets are known; each
+// decode uses its own instance, which is the bit reader.
+// https://www.rfc-editor.org/rfc/rfc9639.html
+final class FlacFrame
+{
+    record Header(boolean variable, long number, int blockSize, int channels, int assignment, int bits, int length)
+    {
+        // Number of the first sample, fixed block size streams number frames
+        long first(int streamBlockSize)
+        {
+            return variable ? number : number * streamBlockSize;
+        }
+    }
+
+    private static final int[] CRC8 = new int[256];
+    private static final int[][] CRC16 = new int[8][256]; // [k][b]: b followed by k zero bytes
+    static
+    {
+        for (int i = 0; i < 256; i++)
+        {
+            int crc8 = i;
+            int crc16 = i << 8;
+            for (int j = 0; j < 8; j++)
+            {
+                crc8 = (crc8 & 0x80) != 0 ? (crc8 << 1) ^ 0x07 : crc8 << 1;
+                crc16 = (crc16 & 0x8000) != 0 ? (crc16 << 1) ^ 0x8005 : crc16 << 1;
+            }
+            CRC8[i] = crc8 & 0xFF;
+            CRC16[0][i] = crc16 & 0xFFFF;
+        }
+        for (int k = 1; k < 8; k++)
+        {
+            for (int i = 0; i < 256; i++)
+            {
+                final int crc = CRC16[k - 1][i];
+                CRC16[k][i] = ((crc << 8) & 0xFFFF) ^ CRC16[0][crc >> 8];
+            }
+        }
+    }
+
+    private final byte[] data;
+    private final int limit;
+    private int position; // Next byte to load into the cache
+    private long cache = 0; // Left aligned
+    private int available = 0; // Bits in the cache
+
+    private FlacFrame(byte[] data, int position, int limit)
+    {
+        this.data = data;
+        this.position = position;
+        this.limit = limit;
+    }
+
+    // Frame header at data[offset], null if there is none. Bits per sample
+    // not given in the header are the stream's.
+    static Header header(byte[] data, int offset, int limit, int streamBits)
+    {
+        if (limit - offset < 6 || (data[offset] & 0xFF) != 0xFF || (data[offset + 1] & 0xFE) != 0xF8)
+        {
+            return null;
+        }
+        final boolean variable = (data[offset + 1] & 1) != 0;
+        final int blockCode = (data[offset + 2] >> 4) & 0xF;
+        final int rateCode = data[offset + 2] & 0xF;
+        final int assignment = (data[offset + 3] >> 4) & 0xF;
+        final int sizeCode = (data[offset + 3] >> 1) & 0x7;
+        if (blockCode == 0 || rateCode == 15 || assignment > 10 || sizeCode == 3 || (data[offset + 3] & 1) != 0)
+        {
+            return null;
+        }
+
+        // Frame or sample number, coded like UTF-8
+        int i = offset + 4;
+        final int lead = data[i++] & 0xFF;
+        int extra;
+        long number;
+        if (lead < 0x80)
+        {
+            extra = 0;
+            number = lead;
+        }
+        else if (lead >= 0xC0 && lead < 0xFF)
+        {
+            extra = Integer.numberOfLeadingZeros(~lead << 24) - 1;
+            number = lead & (0x3F >> extra);
+        }
+        else
+        {
+            return null;
+        }
+        if (i + extra + 5 > limit)
+        {
+            return null;
+        }
+        for (int j = 0; j < extra; j++)
+        {
+            final int b = data[i++] & 0xFF;
+            if ((b & 0xC0) != 0x80)
+            {
+                return null;
+            }
+            number = (number << 6) | (b & 0x3F);
+        }
+
+        final int blockSize;
+        if (blockCode == 1)
+        {
+            blockSize = 192;
+        }
+        else if (blockCode <= 5)
+        {
+            blockSize = 576 << (blockCode - 2);
+        }
+        else if (blockCode == 6)
+        {
+            blockSize = (data[i++] & 0xFF) + 1;
+        }
+        else if (blockCode == 7)
+        {
+            blockSize = ((data[i] & 0xFF) << 8 | (data[i + 1] & 0xFF)) + 1;
+            i += 2;
+        }
+        else
+        {
+            blockSize = 256 << (blockCode - 8);
+        }
+        if (rateCode == 12)
+        {
+            i++;
+        }
+        else if (rateCode == 13 || rateCode == 14)
+        {
+            i += 2;
+        }
+
+        if (crc8(data, offset, i) != (data[i] & 0xFF))
+        {
+            return null;
+        }
+        final int[] sizes = { streamBits, 8, 12, 0, 16, 20, 24, 32 };
+        final int channels = assignment < 8 ? assignment + 1 : 2;
+        return new Header(variable, number, blockSize, channels, assignment, sizes[sizeCode], i + 1 - offset);
+    }
+
+    // Decode the frame at data[offset] with the given header into
+    // out[channel][base, base + blockSize), returns the offset of its end
+    static int decode(byte[] data, int offset, int limit, Header header, int[][] out, int base) throws IOException
+    {
+        final FlacFrame frame = new FlacFrame(data, offset + header.length(), limit);
+        final int n = header.blockSize();
+        final int assignment = header.assignment();
+        for (int c = 0; c < header.channels(); c++)
+        {
+            // The side channel has one more bit
+            final boolean side = (assignment == 8 || assignment == 10) ? c == 1 : assignment == 9 && c == 0;
+            frame.subframe(out[c], base, n, header.bits() + (side ? 1 : 0));
+        }
+
+        // Padding to a byte boundary, then CRC-16 of the whole frame
+        final int end = frame.position - frame.available / 8;
+        if (end + 2 > limit
+            || crc16(data, offset, end) != ((data[end] & 0xFF) << 8 | (data[end + 1] & 0xFF)))
+        {
+            throw new IOException("Corrupt FLAC frame");
+        }
+
+        if (assignment >= 8)
+        {
+            final int[] a = out[0];
+            final int[] b = out[1];
+            for (int i = base; i < base + n; i++)
+            {
+                switch (assignment)
+                {
+                    case 8: // Left, side
+                        b[i] = a[i] - b[i];
+                        break;
+                    case 9: // Side, right
+                        a[i] += b[i];
+                        break;
+                    default: // Mid, side
+                        final int mid = (a[i] << 1) | (b[i] & 1);
+                        final int side = b[i];
+                        a[i] = (mid + side) >> 1;
+                        b[i] = (mid - side) >> 1;
+                        break;
+                }
+            }
+        }
+        return end + 2;
+    }
+
+    private void subframe(int[] out, int base, int n, int bits) throws IOException
+    {
+        if (bits(1) != 0)
+        {
+            throw new IOException("Corrupt FLAC subframe");
+        }
+        final int type = bits(6);
+        int wasted = 0;
+        if (bits(1) != 0)
+        {
+            wasted = unary() + 1;
+            bits -= wasted;
+        }
+        if (bits > 32)
+        {
+            // Only the side channel of 32 bit audio
+            throw new IOException("Unsupported FLAC sample size: " + bits);
+        }
+
+        if (type == 0)
+        {
+            final int value = signed(bits);
+            for (int i = base; i < base + n; i++)
+            {
+                out[i] = value;
+            }
+        }
+        else if (type == 1)
+        {
+            for (int i = base; i < base + n; i++)
+            {
+                out[i] = signed(bits);
+            }
+        }
+        else if (type >= 8 && type <= 12)
+        {
+            fixed(out, base, n, type - 8, bits);
+        }
+        else if (type >= 32)
+        {
+            lpc(out, base, n, type - 31, bits);
+        }
+        else
+        {
+            throw new IOException("Corrupt FLAC subframe type: " + type);
+        }
+
+        if (wasted > 0)
+        {
+            for (int i = base; i < base + n; i++)
+            {
+                out[i] <<= wasted;
+            }
+        }
+    }
+
+    // Fixed polynomial predictors. Intermediate overflow wraps around, which
+    // doesn't matter as long as the result fits.
+    private void fixed(int[] out, int base, int n, int order, int bits) throws IOException
+    {
+        for (int i = base; i < base + order; i++)
+        {
+            out[i] = signed(bits);
+        }
+        residual(out, base, n, order);
+        final int end = base + n;
+        switch (order)
+        {
+            case 1:
+                for (int i = base + 1; i < end; i++)
+                {
+                    out[i] += out[i - 1];
+                }
+                break;
+            case 2:
+                for (int i = base + 2; i < end; i++)
+                {
+                    out[i] += 2 * out[i - 1] - out[i - 2];
+                }
+                break;
+            case 3:
+                for (int i = base + 3; i < end; i++)
+                {
+                    out[i] += 3 * (out[i - 1] - out[i - 2]) + out[i - 3];
+                }
+                break;
+            case 4:
+                for (int i = base + 4; i < end; i++)
+                {
+                    out[i] += 4 * (out[i - 1] + out[i - 3]) - 6 * out[i - 2] - out[i - 4];
+                }
+                break;
+        }
+    }
+
+    private void lpc(int[] out, int base, int n, int order, int bits) throws IOException
+    {
+        if (order > n)
+        {
+            throw new IOException("Corrupt FLAC subframe");
+        }
+        for (int i = base; i < base + order; i++)
+        {
+            out[i] = signed(bits);
+        }
+        final int precision = bits(4) + 1;
+        final int shift = signed(5);
+        if (precision == 16 || shift < 0)
+        {
+            throw new IOException("Corrupt FLAC subframe");
+        }
+        final int[] coefficients = new int[order];
+        for (int j = 0; j < order; j++)
+        {
+            coefficients[j] = signed(precision);
+        }
+        residual(out, base, n, order);
+
+        // The prediction only needs 64 bits for wide samples
+        final int end = base + n;
+        if (bits + precision + 5 <= 32)
+        {
+            for (int i = base + order; i < end; i++)
+            {
+                int sum = 0;
+                for (int j = 0; j < order; j++)
+                {
+                    sum += coefficients[j] * out[i - 1 - j];
+                }
+                out[i] += sum >> shift;
+            }
+        }
+        else
+        {
+            for (int i = base + order; i < end; i++)
+            {
+                long sum = 0;
+                for (int j = 0; j < order; j++)
+                {
+                    sum += (long)coefficients[j] * out[i - 1 - j];
+                }
+                out[i] += (int)(sum >> shift);
+            }
+        }
+    }
+
+    // Rice coded residual of the samples after the warm-up ones
+    private void residual(int[] out, int base, int n, int order) throws IOException
+    {
+        final int method = bits(2);
+        if (method > 1)
+        {
+            throw new IOException("Corrupt FLAC residual");
+        }
+        final int parameterBits = method == 0 ? 4 : 5;
+        final int escape = (1 << parameterBits) - 1;
+        final int partitionOrder = bits(4);
+        final int samples = n >> partitionOrder;
+        if ((samples << partitionOrder) != n || samples < order)
+        {
+            throw new IOException("Corrupt FLAC residual");
+        }
+
+        int i = base + order;
+        for (int p = 0; p < 1 << partitionOrder; p++)
+        {
+            final int end = base + (p + 1) * samples;
+            final int parameter = bits(parameterBits);
+            if (parameter == escape)
+            {
+                final int size = bits(5);
+                for (; i < end; i++)
+                {
+                    out[i] = signed(size);
+                }
+                continue;
+            }
+            rice(out, i, end, parameter);
+            i = end;
+        }
+    }
+
+    // Rice codes of out[from, end), the bulk of a frame. Same as unary() and
+    // bits() per sample, with the reader's state kept in locals.
+    private void rice(int[] out, int from, int end, int parameter) throws IOException
+    {
+        long cache = this.cache;
+        int available = this.available;
+        int position = this.position;
+        for (int i = from; i < end; i++)
+        {
+            if (available < 32)
+            {
+                while (available <= 56 && position < limit)
+                {
+                    cache |= (long)(data[position++] & 0xFF) << (56 - available);
+                    available += 8;
+                }
+            }
+            int quotient = 0;
+            while (cache == 0)
+            {
+                quotient += available;
+                available = 0;
+                while (available <= 56 && position < limit)
+                {
+                    cache |= (long)(data[position++] & 0xFF) << (56 - available);
+                    available += 8;
+                }
+                if (available == 0)
+                {
+                    throw new IOException("Truncated FLAC frame");
+                }
+            }
+            final int zeros = Long.numberOfLeadingZeros(cache);
+            quotient += zeros;
+            cache = (cache << zeros) << 1;
+            available -= zeros + 1;
+            if (available < parameter)
+            {
+                while (available <= 56 && position < limit)
+                {
+                    cache |= (long)(data[position++] & 0xFF) << (56 - available);
+                    available += 8;
+                }
+                if (available < parameter)
+                {
+                    throw new IOException("Truncated FLAC frame");
+                }
+            }
+            final int value = (quotient << parameter) | (int)((cache >>> 1) >>> (63 - parameter));
+            cache <<= parameter;
+            available -= parameter;
+            out[i] = (value >>> 1) ^ -(value & 1);
+        }
+        this.cache = cache;
+        this.available = available;
+        this.position = position;
+    }
+
+    private void refill()
+    {
+        while (available <= 56 && position < limit)
+        {
+            cache |= (long)(data[position++] & 0xFF) << (56 - available);
+            available += 8;
+        }
+    }
+
+    // Next n <= 32 bits, unsigned
+    private int bits(int n) throws IOException
+    {
+        if (n == 0)
+        {
+            return 0;
+        }
+        if (available < n)
+        {
+            refill();
+            if (available < n)
+            {
+                throw new IOException("Truncated FLAC frame");
+            }
+        }
+        final int value = (int)(cache >>> (64 - n));
+        cache <<= n;
+        available -= n;
+        return value;
+    }
+
+    private int signed(int n) throws IOException
+    {
+        return n == 0 ? 0 : (bits(n) << (32 - n)) >> (32 - n);
+    }
+
+    // Number of 0 bits before the next 1 bit
+    private int unary() throws IOException
+    {
+        int count = 0;
+        while (true)
+        {
+            if (cache != 0)
+            {
+                final int zeros = Long.numberOfLeadingZeros(cache);
+                count += zeros;
+                cache = zeros == 63 ? 0 : cache << (zeros + 1);
+                available -= zeros + 1;
+                return count;
+            }
+            count += available;
+            available = 0;
+            refill();
+            if (available == 0)
+            {
+                throw new IOException("Truncated FLAC frame");
+            }
+        }
+    }
+
+    private static int crc8(byte[] data, int from, int to)
+    {
+        int crc = 0;
+        for (int i = from; i < to; i++)
+        {
+            crc = CRC8[crc ^ (data[i] & 0xFF)];
+        }
+        return crc;
+    }
+
+    // Eight bytes at a time (slicing-by-8), it covers every byte of a frame
+    private static int crc16(byte[] data, int from, int to)
+    {
+        final int[] t0 = CRC16[0], t1 = CRC16[1], t2 = CRC16[2], t3 = CRC16[3];
+        final int[] t4 = CRC16[4], t5 = CRC16[5], t6 = CRC16[6], t7 = CRC16[7];
+        int crc = 0;
+        int i = from;
+        for (; i + 8 <= to; i += 8)
+        {
+            crc ^= (data[i] & 0xFF) << 8 | (data[i + 1] & 0xFF);
+            crc = t7[crc >> 8] ^ t6[crc & 0xFF] ^ t5[data[i + 2] & 0xFF] ^ t4[data[i + 3] & 0xFF]
+                ^ t3[data[i + 4] & 0xFF] ^ t2[data[i + 5] & 0xFF] ^ t1[data[i + 6] & 0xFF] ^ t0[data[i + 7] & 0xFF];
+        }
+        for (; i < to; i++)
+        {
+            crc = ((crc << 8) & 0xFFFF) ^ t0[(crc >> 8) ^ (data[i] & 0xFF)];
+        }
+        return crc;
+    }
+}
@@ -0,0 +1,579 @@
+package com.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+
+// Source decoding FLAC files without javax.sound.sampled. Reads a batch of
+// compressed bytes at a time, finds the frames in it by their sync code
+// (checking the header CRC and that frames are numbered consecutively) and
+// decodes them. Given a job, e.g. when a reader streams a whole file, a
+// batch is decoded by a task per core on the scheduler, with the priority
+// of the job; otherwise, e.g. within tasks that are already on the
+// scheduler, frame by frame on the calling thread. Batches grow while
+// reading on and start small again after seeking, so a seek followed by a
+// short read decodes little more than the frames it needs. Seeking narrows
+// down the frame holding the target sample using the SEEKTABLE if there is
+// one, then by interpolating between frame headers found near byte offsets.
+// https://www.rfc-editor.org/rfc/rfc9639.html
+public class FlacSource implements Source
+{
+    public static final AudioFileFormat.Type FLAC = new AudioFileFormat.Type("FLAC", "flac");
+
+    private static final int MIN_BATCH = 1 << 16;
+    private static final int MAX_BATCH = 1 << 21;
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final FileChannel fileChannel;
+    private final AudioFormat format;
+    private final long frameLength;
+    private final int channels;
+    private final int bits;
+    private final int blockSize; // Of fixed block size streams
+    private final int minFrameSize;
+    private final int maxFrameSize;
+    private final long audioOffset; // First frame
+    private final long fileSize;
+    private final long[] seekSamples;
+    private final long[] seekOffsets;
+
+    // Decoded samples [first, first + count) of the current batch
+    private int[][] samples;
+    private long first = 0;
+    private int count = 0;
+    private byte[] bytes = new byte[0];
+    private int batchSize = MIN_BATCH;
+    private long nextOffset; // Of the frame after the batch
+    private long nextSample;
+    private long position = 0;
+    private Scheduler.Job job; // Decodes batches, or null to decode inline
+
+    private FlacSource(FileChannel channel, ByteBuffer info, long audioOffset, long[] seekSamples, long[] seekOffsets) throws IOException
+    {
+        this.fileChannel = channel;
+        this.blockSize = info.getShort(2) & 0xFFFF;
+        this.minFrameSize = ((info.get(4) & 0xFF) << 16) | ((info.get(5) & 0xFF) << 8) | (info.get(6) & 0xFF);
+        this.maxFrameSize = ((info.get(7) & 0xFF) << 16) | ((info.get(8) & 0xFF) << 8) | (info.get(9) & 0xFF);
+        final long packed = info.getLong(10);
+        final int sampleRate = (int)(packed >>> 44);
+        this.channels = (int)((packed >>> 41) & 0x7) + 1;
+        this.bits = (int)((packed >>> 36) & 0x1F) + 1;
+        final long total = packed & 0xFFFFFFFFFL;
+        this.frameLength = total == 0 ? AudioSystem.NOT_SPECIFIED : total;
+        this.format = new AudioFormat(AudioFormat.Encoding.PCM_SIGNED, sampleRate, bits, channels,
+            channels * ((bits + 7) / 8), sampleRate, false);
+        this.audioOffset = audioOffset;
+        this.fileSize = channel.size();
+        this.seekSamples = seekSamples;
+        this.seekOffsets = seekOffsets;
+        this.samples = new int[channels][0];
+        this.nextOffset = audioOffset;
+        this.nextSample = 0;
+    }
+
+    // Returns null if the file isn't a FLAC file
+    public static FlacSource open(File file) throws IOException
+    {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try
+        {
+            FlacSource source = parse(channel);
+            if (source != null)
+            {
+                return source;
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+        channel.close();
+        return null;
+    }
+
+    // Returns null if the file isn't a FLAC file
+    public static AudioFileFormat getFileFormat(File file) throws IOException
+    {
+        try (FlacSource source = open(file))
+        {
+            if (source == null)
+            {
+                return null;
+            }
+            final long length = source.getFrameLength();
+            return new AudioFileFormat(FLAC, source.getFormat(),
+                length <= Integer.MAX_VALUE ? (int)length : AudioSystem.NOT_SPECIFIED);
+        }
+    }
+
+    private static FlacSource parse(FileChannel channel) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(10).order(ByteOrder.BIG_ENDIAN);
+        if (channel.read(header, 0) < 10)
+        {
+            return null;
+        }
+        long offset = 0;
+        if (ascii(header, 0, 3).equals("ID3"))
+        {
+            // Skip an ID3v2 tag, its size is coded in 7 bits per byte
+            int size = 0;
+            for (int i = 6; i < 10; i++)
+            {
+                size = (size << 7) | (header.get(i) & 0x7F);
+            }
+            offset = 10 + size + ((header.get(5) & 0x10) != 0 ? 10 : 0);
+            if (channel.read(header.clear(), offset) < 4)
+            {
+                return null;
+            }
+        }
+        if (!ascii(header, 0, 4).equals("fLaC"))
+        {
+            return null;
+        }
+        offset += 4;
+
+        // Metadata blocks, STREAMINFO first
+        ByteBuffer info = null;
+        long[] seekSamples = new long[0];
+        long[] seekOffsets = new long[0];
+        ByteBuffer block = ByteBuffer.allocate(4).order(ByteOrder.BIG_ENDIAN);
+        boolean last = false;
+        while (!last)
+        {
+            if (channel.read(block.clear(), offset) < 4)
+            {
+                throw new IOException("Truncated FLAC metadata");
+            }
+            last = (block.get(0) & 0x80) != 0;
+            final int type = block.get(0) & 0x7F;
+            final int size = block.getInt(0) & 0xFFFFFF;
+            offset += 4;
+
+            if (type == 0 && size >= 34)
+            {
+                info = ByteBuffer.allocate(34).order(ByteOrder.BIG_ENDIAN);
+                channel.read(info, offset);
+            }
+            else if (type == 3)
+            {
+                ByteBuffer table = ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
+                channel.read(table, offset);
+                final int points = size / 18;
+                seekSamples = new long[points];
+                seekOffsets = new long[points];
+                int numPoints = 0;
+                for (int i = 0; i < points; i++)
+                {
+                    final long sample = table.getLong(i * 18);
+                    if (sample != -1) // Placeholder
+                    {
+                        seekSamples[numPoints] = sample;
+                        seekOffsets[numPoints++] = table.getLong(i * 18 + 8);
+                    }
+                }
+                seekSamples = Arrays.copyOf(seekSamples, numPoints);
+                seekOffsets = Arrays.copyOf(seekOffsets, numPoints);
+            }
+            offset += size;
+        }
+        if (info == null)
+        {
+            throw new IOException("FLAC file without STREAMINFO");
+        }
+        for (int i = 0; i < seekOffsets.length; i++)
+        {
+            seekOffsets[i] += offset; // Relative to the first frame
+        }
+        return new FlacSource(channel, info, offset, seekSamples, seekOffsets);
+    }
+
+    private static String ascii(ByteBuffer buffer, int index, int length)
+    {
+        byte[] bytes = new byte[length];
+        buffer.get(index, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    @Override
+    public AudioFormat getFormat()
+    {
+        return format;
+    }
+
+    @Override
+    public long getFrameLength()
+    {
+        return frameLength;
+    }
+
+    @Override
+    public void setJob(Scheduler.Job value)
+    {
+        job = value;
+    }
+
+    @Override
+    public void seek(long frame) throws IOException
+    {
+        position = frameLength == AudioSystem.NOT_SPECIFIED ? Math.max(0, frame) : Math.max(0, Math.min(frame, frameLength));
+
+        // Decoding on is cheaper than locating a frame a few frames ahead. The
+        // batch may have been dropped by locate(), so anything outside it and
+        // behind the next frame to decode needs locating.
+        final boolean decoded = position >= first && position < first + count;
+        if (!decoded && (position < nextSample || position > nextSample + 4L * Math.max(blockSize, 4096)))
+        {
+            locate(position);
+        }
+    }
+
+    @Override
+    public int read(double[] buffer, int offset, int length, int channel) throws IOException
+    {
+        if (!fill())
+        {
+            return -1;
+        }
+        final int index = (int)(position - first);
+        final int frames = Math.min(length, count - index);
+        final int[] source = samples[channel];
+        for (int i = 0; i < frames; i++)
+        {
+            buffer[offset + i] = source[index + i];
+        }
+        position += frames;
+        return frames;
+    }
+
+    @Override
+    public int read(double[][] buffers, int offset, int length) throws IOException
+    {
+        if (!fill())
+        {
+            return -1;
+        }
+        final int index = (int)(position - first);
+        final int frames = Math.min(length, count - index);
+        for (int channel = 0; channel < buffers.length; channel++)
+        {
+            final int[] source = samples[channel];
+            final double[] buffer = buffers[channel];
+            for (int i = 0; i < frames; i++)
+            {
+                buffer[offset + i] = source[index + i];
+            }
+        }
+        position += frames;
+        return frames;
+    }
+
+    // Decode batches until the one holding the position, returns false at
+    // the end of the stream
+    private boolean fill() throws IOException
+    {
+        if (frameLength != AudioSystem.NOT_SPECIFIED && position >= frameLength)
+        {
+            return false;
+        }
+        while (position >= first + count)
+        {
+            if (!decode())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Decode the next batch of frames, returns false if there are none left
+    private boolean decode() throws IOException
+    {
+        if (nextOffset >= fileSize)
+        {
+            return false;
+        }
+
+        // Read until it holds at least one whole frame
+        int length;
+        boolean isLast;
+        int numFrames;
+        int[] offsets;
+        FlacFrame.Header[] headers;
+        while (true)
+        {
+            length = (int)Math.min(batchSize, fileSize - nextOffset);
+            isLast = nextOffset + length == fileSize;
+            if (bytes.length < length)
+            {
+                bytes = new byte[length];
+            }
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, length);
+            while (buffer.hasRemaining())
+            {
+                if (fileChannel.read(buffer, nextOffset + buffer.position()) < 0)
+                {
+                    throw new IOException("FLAC file shrank while reading");
+                }
+            }
+
+            FlacFrame.Header header = FlacFrame.header(bytes, 0, length, bits);
+            if (header == null || !matches(header, nextSample, nextSample))
+            {
+                if (isLast)
+                {
+                    return false; // Trailing garbage, like an ID3v1 tag
+                }
+                throw new IOException("Lost FLAC frame sync at " + nextOffset);
+            }
+
+            // Each frame ends where the next one starts
+            offsets = new int[16];
+            headers = new FlacFrame.Header[16];
+            numFrames = 0;
+            int offset = 0;
+            while (header != null)
+            {
+                final long next = header.first(blockSize) + header.blockSize();
+                final int end = find(bytes, offset + Math.max(header.length() + 1, minFrameSize), length, next, next);
+                if (end < 0 && !isLast)
+                {
+                    break; // Incomplete, or too close to the end to tell
+                }
+                if (numFrames == offsets.length)
+                {
+                    offsets = Arrays.copyOf(offsets, numFrames * 2);
+                    headers = Arrays.copyOf(headers, numFrames * 2);
+                }
+                offsets[numFrames] = offset;
+                headers[numFrames++] = header;
+                if (end < 0)
+                {
+                    break;
+                }
+                offset = end;
+                header = FlacFrame.header(bytes, offset, length, bits);
+            }
+            if (numFrames > 0)
+            {
+                break;
+            }
+            batchSize *= 2; // Frames larger than the batch
+        }
+
+        final int[] bases = new int[numFrames + 1];
+        for (int i = 0; i < numFrames; i++)
+        {
+            bases[i + 1] = bases[i] + headers[i].blockSize();
+        }
+        final int total = bases[numFrames];
+        if (samples[0].length < total)
+        {
+            samples = new int[channels][total];
+        }
+
+        final int[] ends = new int[numFrames];
+        final int[][] out = samples;
+        final int[] starts = offsets;
+        final FlacFrame.Header[] frames = headers;
+        final int limit = length;
+        final int tasks = job == null || Scheduler.isPoolThread() ? 1 : Math.min(numFrames, job.getScheduler().getThreads());
+        if (tasks == 1)
+        {
+            for (int i = 0; i < numFrames; i++)
+            {
+                ends[i] = FlacFrame.decode(bytes, starts[i], limit, frames[i], out, bases[i]);
+            }
+        }
+        else
+        {
+            // Contiguous ranges of frames, one per task
+            final byte[] data = bytes;
+            final List<Future<?>> futures = new ArrayList<>(tasks);
+            for (int t = 0; t < tasks; t++)
+            {
+                final int from = t * numFrames / tasks;
+                final int to = (t + 1) * numFrames / tasks;
+                futures.add(job.submit(() -> {
+                    for (int i = from; i < to; i++)
+                    {
+                        ends[i] = FlacFrame.decode(data, starts[i], limit, frames[i], out, bases[i]);
+                    }
+                    return null;
+                }));
+            }
+            try
+            {
+                for (Future<?> future : futures)
+                {
+                    future.get();
+                }
+            }
+            catch (InterruptedException | CancellationException | ExecutionException e)
+            {
+                // Tasks still running mustn't write into the next batch
+                for (Future<?> future : futures)
+                {
+                    future.cancel(false);
+                }
+                samples = new int[channels][0];
+                bytes = new byte[0];
+                count = 0;
+                if (e instanceof ExecutionException && e.getCause() instanceof IOException cause)
+                {
+                    throw cause;
+                }
+                if (e instanceof ExecutionException)
+                {
+                    throw new IOException(e.getCause());
+                }
+                throw new InterruptedIOException("FLAC decoding " + (e instanceof InterruptedException ? "interrupted" : "cancelled"));
+            }
+        }
+        for (int i = 0; i + 1 < numFrames; i++)
+        {
+            if (ends[i] != starts[i + 1])
+            {
+                throw new IOException("Corrupt FLAC frame at " + (nextOffset + starts[i]));
+            }
+        }
+
+        first = nextSample;
+        count = total;
+        nextOffset += ends[numFrames - 1];
+        nextSample += total;
+        batchSize = Math.min(batchSize * 2, MAX_BATCH);
+        return true;
+    }
+
+    // Whether a header belongs to this stream and starts at a sample in [min, max]
+    private boolean matches(FlacFrame.Header header, long min, long max)
+    {
+        final long sample = header.first(blockSize);
+        return header.channels() == channels && header.bits() == bits && sample >= min && sample <= max;
+    }
+
+    // Offset of the first frame header in data[from, limit) starting at a
+    // sample in [min, max], or -1
+    private int find(byte[] data, int from, int limit, long min, long max)
+    {
+        for (int i = from; i < limit - 1; i++)
+        {
+            // Skip words without any 0xFF byte
+            while (i + 8 <= limit)
+            {
+                final long word = ~(long)LONGS.get(data, i);
+                if (((word - 0x0101010101010101L) & ~word & 0x8080808080808080L) != 0)
+                {
+                    break;
+                }
+                i += 8;
+            }
+            if (i >= limit - 1)
+            {
+                break;
+            }
+            if (data[i] == (byte)0xFF && (data[i + 1] & 0xFE) == 0xF8)
+            {
+                FlacFrame.Header header = FlacFrame.header(data, i, limit, bits);
+                if (header != null && matches(header, min, max))
+                {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    // Position the next batch at a frame a little before the one holding
+    // the target sample, or at it
+    private void locate(long target) throws IOException
+    {
+        long lowOffset = audioOffset;
+        long lowSample = 0;
+        long highOffset = fileSize;
+        long highSample = frameLength == AudioSystem.NOT_SPECIFIED ? Long.MAX_VALUE : frameLength;
+        for (int i = 0; i < seekSamples.length; i++)
+        {
+            if (seekSamples[i] <= target && seekSamples[i] >= lowSample && seekOffsets[i] < fileSize)
+            {
+                lowSample = seekSamples[i];
+                lowOffset = seekOffsets[i];
+            }
+            else if (seekSamples[i] > target && seekSamples[i] < highSample && seekOffsets[i] < highOffset)
+            {
+                highSample = seekSamples[i];
+                highOffset = seekOffsets[i];
+            }
+        }
+
+        // Interpolate (or bisect every other step, in case interpolating
+        // converges slowly) until the range is about a frame long
+        final int window = Math.max(maxFrameSize, 1 << 14) + 32;
+        final byte[] data = new byte[2 * window];
+        for (int step = 0; highOffset - lowOffset > window; step++)
+        {
+            long middle = step % 2 == 1 || highSample == Long.MAX_VALUE
+                ? lowOffset + (highOffset - lowOffset) / 2
+                : lowOffset + (long)((double)(target - lowSample) / (highSample - lowSample) * (highOffset - lowOffset));
+            middle = Math.max(lowOffset + 1, Math.min(middle, highOffset - window));
+
+            final ByteBuffer buffer = ByteBuffer.wrap(data, 0, (int)Math.min(data.length, fileSize - middle));
+            fileChannel.read(buffer, middle);
+            final int length = buffer.position();
+            final int i = find(data, 0, length, lowSample + 1, highSample - 1);
+            if (i < 0 || middle + i >= highOffset)
+            {
+                highOffset = middle; // No frame starts in between
+                continue;
+            }
+            final FlacFrame.Header header = FlacFrame.header(data, i, length, bits);
+            final long sample = header.first(blockSize);
+            if (sample <= target)
+            {
+                lowOffset = middle + i;
+                lowSample = sample;
+                if (target < sample + header.blockSize())
+                {
+                    break;
+                }
+            }
+            else
+            {
+                highOffset = middle + i;
+                highSample = sample;
+            }
+        }
+
+        first = 0;
+        count = 0;
+        nextOffset = lowOffset;
+        nextSample = lowSample;
+        batchSize = MIN_BATCH;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        fileChannel.close();
+    }
+}
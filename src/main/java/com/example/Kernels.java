@@ -0,0 +1,182 @@
+package com.example;
+
+// Per-sample & per-bin loops around the FFT. They run as SIMD kernels
+// (VectorKernels) when the jdk.incubator.vector module is present, i.e. the
+// JVM was started with --add-modules jdk.incubator.vector, and as plain
+// loops otherwise.
+public final class Kernels
+{
+    public static final boolean VECTOR = isVectorAvailable();
+
+    private Kernels() {}
+
+    private static boolean isVectorAvailable()
+    {
+        try
+        {
+            Class.forName("jdk.incubator.vector.DoubleVector");
+            return !Boolean.getBoolean("jspect.scalar");
+        }
+        catch (ClassNotFoundException | LinkageError e)
+        {
+            return false;
+        }
+    }
+
+    // Prepare FFT input from the last n samples of the circular history
+    public static void window(double[] history, int position, double[] window, double[] input)
+    {
+        if (VECTOR)
+        {
+            VectorKernels.window(history, position, window, input);
+        }
+        else
+        {
+            windowScalar(history, position, window, input);
+        }
+    }
+
+    // sum[i] += values[i] for the first n values
+    public static void add(double[] sum, double[] values, int n)
+    {
+        if (VECTOR)
+        {
+            VectorKernels.add(sum, values, n);
+        }
+        else
+        {
+            addScalar(sum, values, n);
+        }
+    }
+
+    // sum[i] += re[i]^2 + im[i]^2 for the first n bins
+    public static void addPower(double[] sum, double[] re, double[] im, int n)
+    {
+        if (VECTOR)
+        {
+            VectorKernels.addPower(sum, re, im, n);
+        }
+        else
+        {
+            addPowerScalar(sum, re, im, n);
+        }
+    }
+
+    // max[i] = max(max[i], re[i]^2 + im[i]^2) for the first n bins
+    public static void maxPower(double[] max, double[] re, double[] im, int n)
+    {
+        if (VECTOR)
+        {
+            VectorKernels.maxPower(max, re, im, n);
+        }
+        else
+        {
+            maxPowerScalar(max, re, im, n);
+        }
+    }
+
+    // Magnitudes in dB of the average of count summed FFTs of size n,
+    // normalised to [0, 1]
+    public static void normalise(double[] sumRe, double[] sumIm, int count, int n, double[] slice)
+    {
+        if (VECTOR)
+        {
+            VectorKernels.normalise(sumRe, sumIm, count, n, slice);
+        }
+        else
+        {
+            normaliseScalar(sumRe, sumIm, count, n, slice);
+        }
+    }
+
+    // Like normalise(), from the sum of the power of count FFTs
+    public static void normalisePower(double[] power, int count, int n, double[] slice)
+    {
+        if (VECTOR)
+        {
+            VectorKernels.normalisePower(power, count, n, slice);
+        }
+        else
+        {
+            normalisePowerScalar(power, count, n, slice);
+        }
+    }
+
+    static void windowScalar(double[] history, int position, double[] window, double[] input)
+    {
+        final int n = window.length;
+        for (int i = 0; i < n; i++)
+        {
+            input[i] = history[(position + i) & (n - 1)] * window[i];
+        }
+    }
+
+    static void addScalar(double[] sum, double[] values, int n)
+    {
+        for (int i = 0; i < n; i++)
+        {
+            sum[i] += values[i];
+        }
+    }
+
+    static void addPowerScalar(double[] sum, double[] re, double[] im, int n)
+    {
+        for (int i = 0; i < n; i++)
+        {
+            sum[i] += re[i] * re[i] + im[i] * im[i];
+        }
+    }
+
+    static void maxPowerScalar(double[] max, double[] re, double[] im, int n)
+    {
+        for (int i = 0; i < n; i++)
+        {
+            max[i] = Math.max(max[i], re[i] * re[i] + im[i] * im[i]);
+        }
+    }
+
+    static void normaliseScalar(double[] sumRe, double[] sumIm, int count, int n, double[] slice)
+    {
+        // 10 log(|c| / count / n) = 5 log(re^2 + im^2) - 10 log(count n), no hypot() needed
+        final int bins = slice.length;
+        final double offset = 10 * Math.log((double)count * n);
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < bins; i++)
+        {
+            final double re = sumRe[i];
+            final double im = sumIm[i];
+            final double d = 5 * Math.log(re * re + im * im) - offset;
+            slice[i] = d;
+            min = Math.min(d, min);
+            max = Math.max(d, max);
+        }
+        scale(slice, min, max);
+    }
+
+    static void normalisePowerScalar(double[] power, int count, int n, double[] slice)
+    {
+        // 10 log(sqrt(p / count) / n) = 5 log(p) - 5 log(count) - 10 log(n)
+        final int bins = slice.length;
+        final double offset = 5 * Math.log(count) + 10 * Math.log(n);
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < bins; i++)
+        {
+            final double d = 5 * Math.log(power[i]) - offset;
+            slice[i] = d;
+            min = Math.min(d, min);
+            max = Math.max(d, max);
+        }
+        scale(slice, min, max);
+    }
+
+    private static void scale(double[] slice, double min, double max)
+    {
+        final double range = max - min;
+        for (int i = 0; i < slice.length; i++)
+        {
+            slice[i] = (slice[i] - min) / range;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.example;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javafx.animation.AnimationTimer;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.layout.Pane;
+
+// Scrolling spectrogram of a live stream. Slices are drawn one pixel column
+// each into a circular image, whose oldest column is at the write position.
+// Two views of the same image show [head, width) followed by [0, head), so
+// scrolling never copies pixels and memory stays constant. If the UI falls
+// behind, the oldest pending slices are dropped to keep the latency bounded.
+public class LiveView extends AnimationTimer implements Sink
+{
+    private static final int CAPACITY = 64; // Slices, i.e. 640 ms at a 10 ms hop
+
+    private record Item(double[] slice, long time) {}
+
+    private final Pane pane;
+    private final Renderer renderer;
+    private final ImageView left = new ImageView();
+    private final ImageView right = new ImageView();
+    private final BlockingQueue<Item> staging = new ArrayBlockingQueue<>(CAPACITY);
+    private final List<Item> batch = new ArrayList<>();
+    private WritableImage image;
+    private int[] column = new int[0];
+    private int head = 0;
+    private volatile long latency = 0;
+    private volatile long dropped = 0;
+
+    public LiveView(Pane pane, Renderer renderer)
+    {
+        this.pane = pane;
+        this.renderer = renderer;
+        left.setManaged(false);
+        right.setManaged(false);
+    }
+
+    // FX thread
+    public void open()
+    {
+        pane.getChildren().addAll(0, List.of(left, right));
+        start();
+    }
+
+    // FX thread
+    public void close()
+    {
+        stop();
+        pane.getChildren().removeAll(left, right);
+        staging.clear();
+    }
+
+    // Worker thread: never blocks, makes room by dropping the oldest slice
+    @Override
+    public boolean publish(double[] slice)
+    {
+        final Item item = new Item(slice, System.nanoTime());
+        while (!staging.offer(item))
+        {
+            if (staging.poll() != null)
+            {
+                dropped++;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void finish()
+    {
+    }
+
+    public int getBacklog()
+    {
+        return staging.size();
+    }
+
+    // Time from a slice being published to being drawn, in ns (last pulse)
+    public long getLatency()
+    {
+        return latency;
+    }
+
+    public long getDropped()
+    {
+        return dropped;
+    }
+
+    @Override
+    public void handle(long now)
+    {
+        final int width = Math.max(1, (int)pane.getWidth());
+        final int height = Math.max(1, (int)pane.getHeight());
+        if (image == null || image.getWidth() != width || image.getHeight() != height)
+        {
+            // Start over on resize, old columns would be in the wrong place
+            image = new WritableImage(width, height);
+            column = new int[height];
+            head = 0;
+            left.setImage(image);
+            right.setImage(image);
+        }
+
+        staging.drainTo(batch);
+        if (batch.isEmpty())
+        {
+            return;
+        }
+
+        Events.Draw event = new Events.Draw();
+        event.begin();
+        final PixelFormat<IntBuffer> format = PixelFormat.getIntArgbInstance();
+        for (Item item : batch)
+        {
+            renderer.column(item.slice(), column, height);
+            image.getPixelWriter().setPixels(head, 0, 1, height, format, column, 0, 1);
+            head = (head + 1) % width;
+            event.columns++;
+        }
+        event.commit();
+        latency = System.nanoTime() - batch.get(0).time();
+        batch.clear();
+
+        // Oldest column on the left, newest on the right
+        left.setViewport(new Rectangle2D(head, 0, width - head, height));
+        left.relocate(0, 0);
+        right.setVisible(head > 0); // An empty viewport would show the whole image
+        if (head > 0)
+        {
+            right.setViewport(new Rectangle2D(0, 0, head, height));
+            right.relocate(width - head, 0);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.sound.sampled.AudioFormat;
+
+// Analyses raw PCM from a stream of unknown length (pipe, stdin, socket) as
+// it arrives. Every hop of frames produces one slice from the last chunk of
+// samples, so a slice is published as soon as its last frame has been read.
+public final class LiveWorker extends Thread
+{
+    public static final double HOP_SECONDS = 0.01;
+
+    final InputStream in;
+    final AudioFormat format;
+    final Sink sink;
+    final Plan plan;
+    final int hop;
+    final Metrics metrics = new Metrics();
+    private volatile boolean isRunning = true;
+
+    public LiveWorker(InputStream in, AudioFormat format, Plan plan, Sink s)
+    {
+        if (!Decoder.isSupported(format))
+        {
+            throw new IllegalArgumentException("Unsupported format: " + format);
+        }
+        this.in = in;
+        this.format = format;
+        this.sink = s;
+        this.plan = plan;
+        this.hop = Math.max(1, (int)Math.round(format.getFrameRate() * HOP_SECONDS));
+        setDaemon(true); // Reading from stdin can't be interrupted
+    }
+
+    public Metrics getMetrics()
+    {
+        return metrics;
+    }
+
+    public void close()
+    {
+        isRunning = false;
+        interrupt();
+        try
+        {
+            in.close();
+        }
+        catch (IOException e)
+        {
+            // Ignore
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        final Decoder decoder = new Decoder(format);
+        final Analyser analyser = new Analyser(plan, hop);
+        final int frameSize = decoder.getFrameSize();
+        final byte[] bytes = new byte[hop * frameSize];
+        final int channel = 0; // Use channel #0
+
+        try
+        {
+            while (isRunning)
+            {
+                // Block until a whole hop has arrived
+                int length = in.readNBytes(bytes, 0, bytes.length);
+                final int numFrames = length / frameSize;
+                metrics.addBytesRead(length);
+
+                final long numTransforms = analyser.transforms();
+                for (int i = 0; i < numFrames; i++)
+                {
+                    double[] slice = analyser.push(decoder.decode(bytes, i, channel));
+                    if (slice != null)
+                    {
+                        if (!sink.publish(slice))
+                        {
+                            return;
+                        }
+                        metrics.addSlices(1);
+                    }
+                }
+                metrics.addTransforms(analyser.transforms() - numTransforms);
+
+                if (length < bytes.length)
+                {
+                    break; // End of stream
+                }
+            }
+            sink.finish();
+        }
+        catch (InterruptedException e)
+        {
+            return;
+        }
+        catch (IOException e)
+        {
+            if (isRunning)
+            {
+                e.printStackTrace();
+            }
+        }
+    }
+}
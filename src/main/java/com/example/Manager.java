@@ -1,54 +1,126 @@
 package com.example;
 
 import java.io.File;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.sound.sampled.AudioFileFormat;
 import javax.sound.sampled.AudioFormat;
 
 import javafx.beans.property.ReadOnlyListProperty;
 import javafx.beans.property.ReadOnlyListWrapper;
-import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
 public class Manager 
 {
-    private Thread reader;
-    private Thread worker;
+    private List<Thread> threads = List.of();
     private Context context;
-    private ReadOnlyListWrapper<double[]> slices
-        = new ReadOnlyListWrapper<>(FXCollections.observableArrayList());
+    private boolean visible = true;
+    private boolean parallel = true;
+    private boolean progressive = true;
+    private int previewTransforms = 4;
+    private boolean previewJitter = false;
+    private boolean refine = true;
+    private ChannelMode channelMode = ChannelMode.FIRST;
+    private Plan plan = Plan.DEFAULT;
+    private int bufferCapacity = 1024 * 32 * 2; // Samples the reader may read ahead
+    private int maxColumns = 4096;
+    private SpectrumCache cache = new SpectrumCache(256L * 1024 * 1024);
+    private DiskCache diskCache = new DiskCache(DiskCache.defaultDirectory(), 1024L * 1024 * 1024);
+    private int bits = 16; // Per bin in the slice store
+    private SliceList list = new SliceList();
+    private ReadOnlyListWrapper<double[]> slices = new ReadOnlyListWrapper<>(list);
+    private Publisher publisher = new Publisher(slices);
 
-    public class Context
+    public static class Context
     {
         // Constants
         public final File file;
         public final AudioFileFormat fileFormat;
         public final AudioFormat audioFormat;
-        public final int pixels;
-        public final int chunkSize = 1024;
-        public final int numChunks = 32; // Chunks to pre-load
+        public final Plan plan;
+        public final int columns; // Independent of canvas size
+        public final int samplesPerSlice;
+        public final ChannelMode mode;
+        public final int tracks; // Spectrograms per column
+        public final BinMap[] maps; // Per track to reduce slices to display rows, or null for all bins
 
         // Common state
-        public final double[] buffer = new double[chunkSize * (numChunks * 2 + 1)];
-        
+        public final RingBuffer[] buffers; // One per track, written in lockstep
+        public final Metrics metrics = new Metrics();
+        public final Scheduler.Job job = Scheduler.shared().job(Scheduler.Priority.VISIBLE); // CPU work of the run
+
         // Internal state
         private boolean isRunning = true;
-        private int position = 0;
-        private boolean workerDone = true;
-        private final Lock readerMutex = new ReentrantLock();
-        private final Lock workerMutex = new ReentrantLock();
-        private final Condition notFull = readerMutex.newCondition(); 
-        private final Condition notEmpty = workerMutex.newCondition();
+        private Throwable failure; // First error that cut the analysis short
 
-        public Context(File file, AudioFileFormat fileFormat, int pixels)
+        public Context(File file, AudioFileFormat fileFormat, int maxColumns, int bufferCapacity, ChannelMode mode, Plan plan)
+        {
+            this(file, fileFormat, maxColumns, bufferCapacity, mode, plan, 0, BinMap.Axis.LINEAR);
+        }
+
+        // With rows > 0, slices are published as that many display rows
+        // (split between the tracks like Renderer does) instead of all bins
+        public Context(File file, AudioFileFormat fileFormat, int maxColumns, int bufferCapacity, ChannelMode mode, Plan plan,
+            int rows, BinMap.Axis axis)
         {
             this.file = file;
             this.fileFormat = fileFormat;
             this.audioFormat = fileFormat.getFormat();
-            this.pixels = pixels;
+
+            // One column per hop, unless that would exceed the maximum
+            final long numFrames = fileFormat.getFrameLength();
+            this.plan = plan;
+            this.columns = plan.columns(numFrames, maxColumns);
+            this.samplesPerSlice = plan.samplesPerSlice(numFrames, columns);
+            this.mode = mode;
+            this.tracks = mode.tracks(audioFormat.getChannels());
+            this.maps = rows > 0 ? new BinMap[tracks] : null;
+            for (int t = 0; rows > 0 && t < tracks; t++)
+            {
+                final int n = Math.max(1, (t + 1) * rows / tracks - t * rows / tracks);
+                maps[t] = BinMap.of(axis, plan.bins(), n, audioFormat.getSampleRate(), 0, 1, plan.low, plan.high);
+            }
+            this.buffers = new RingBuffer[tracks];
+            for (int t = 0; t < tracks; t++)
+            {
+                buffers[t] = new RingBuffer(bufferCapacity);
+            }
+            this.metrics.setOccupancy(buffers[0]::size);
+        }
+
+        // Slice of one track as published
+        public double[] reduce(int track, double[] slice)
+        {
+            if (maps == null)
+            {
+                return slice;
+            }
+            final double[] rows = new double[maps[track].rows()];
+            maps[track].apply(slice, 0, rows, 0);
+            return rows;
+        }
+
+        // Slice of all tracks, one after the other, as published
+        public double[] reduce(double[] slice)
+        {
+            if (maps == null)
+            {
+                return slice;
+            }
+            int length = 0;
+            for (BinMap map : maps)
+            {
+                length += map.rows();
+            }
+            final double[] rows = new double[length];
+            int offset = 0;
+            for (int t = 0; t < tracks; t++)
+            {
+                maps[t].apply(slice, t * plan.bins(), rows, offset);
+                offset += maps[t].rows();
+            }
+            return rows;
         }
 
         public synchronized void setRunning(boolean value)
@@ -61,42 +133,26 @@ public class Manager
             return isRunning;
         }
 
-        public void signalWorker(int position) throws InterruptedException
+        public synchronized void fail(Throwable e)
         {
-            // Wait until worker is done
-            readerMutex.lock();
-            while (!workerDone)
+            if (failure == null)
             {
-                notFull.await();
+                failure = e;
             }
-            this.workerDone = false;
-            readerMutex.unlock();
-
-            // Assign more work
-            workerMutex.lock();
-            this.position = position;
-            notEmpty.signal();
-            workerMutex.unlock();
         }
 
-        public int awaitWork(int previous) throws InterruptedException
+        // Null unless reading or analysing failed
+        public synchronized Throwable getFailure()
         {
-            // Allow reader to continue
-            readerMutex.lock();
-            this.workerDone = true;
-            notFull.signal();
-            readerMutex.unlock();
+            return failure;
+        }
 
-            // Wait for new work
-            workerMutex.lock();
-            while (previous == this.position)
+        public void closeBuffers()
+        {
+            for (RingBuffer buffer : buffers)
             {
-                notEmpty.await();
+                buffer.close();
             }
-            previous = this.position; // temp. storage
-            workerMutex.unlock();
-
-            return previous;
         }
     }
 
@@ -105,13 +161,188 @@ public class Manager
         return slices.get();
     }
 
+    // The slices of the current file, read directly by the renderer
+    public SliceStore getStore()
+    {
+        return list.getStore();
+    }
+
     public ReadOnlyListProperty<double[]> partialResultsProperty()
     {
         return slices.getReadOnlyProperty();
     }
 
-    
-    private void join(Thread t)
+    public void setParallel(boolean value)
+    {
+        parallel = value;
+    }
+
+    public boolean isParallel()
+    {
+        return parallel;
+    }
+
+    // Show a coarse result of the whole file first, then refine it
+    public void setProgressive(boolean value)
+    {
+        progressive = value;
+    }
+
+    public boolean isProgressive()
+    {
+        return progressive;
+    }
+
+    // FFTs averaged per column by progressive previews, taken from the
+    // middle of equal parts of the column, or at random within them
+    public void setPreviewTransforms(int value)
+    {
+        previewTransforms = value;
+    }
+
+    public int getPreviewTransforms()
+    {
+        return previewTransforms;
+    }
+
+    public void setPreviewJitter(boolean value)
+    {
+        previewJitter = value;
+    }
+
+    public boolean isPreviewJitter()
+    {
+        return previewJitter;
+    }
+
+    // Replace progressive previews by the full analysis, otherwise (e.g. for
+    // very long files) the previews are the result and are not cached
+    public void setRefine(boolean value)
+    {
+        refine = value;
+    }
+
+    public boolean isRefine()
+    {
+        return refine;
+    }
+
+    public void setChannelMode(ChannelMode value)
+    {
+        channelMode = value;
+    }
+
+    public ChannelMode getChannelMode()
+    {
+        return channelMode;
+    }
+
+    // Window, FFT size, hop & averaging of the next file
+    public void setPlan(Plan value)
+    {
+        plan = value;
+    }
+
+    public Plan getPlan()
+    {
+        return plan;
+    }
+
+    // Quantization of the slices kept in memory, 8 or 16 bits per bin
+    public void setBits(int value)
+    {
+        bits = value;
+    }
+
+    public int getBits()
+    {
+        return bits;
+    }
+
+    public void setMaxColumns(int value)
+    {
+        maxColumns = value;
+    }
+
+    public int getMaxColumns()
+    {
+        return maxColumns;
+    }
+
+    // Whether the file is shown, e.g. in the selected tab. The analysis of
+    // a hidden file yields to that of visible ones.
+    public void setVisible(boolean value)
+    {
+        visible = value;
+        if (context != null)
+        {
+            context.job.setPriority(priority());
+        }
+    }
+
+    public boolean isVisible()
+    {
+        return visible;
+    }
+
+    private Scheduler.Priority priority()
+    {
+        return visible ? Scheduler.Priority.VISIBLE : Scheduler.Priority.BACKGROUND;
+    }
+
+    public Context getContext()
+    {
+        return context;
+    }
+
+    // Total number of slices of the current file
+    public int getColumns()
+    {
+        return context != null ? context.columns : 0;
+    }
+
+    // Set to null to disable the persistent cache
+    public void setDiskCache(DiskCache value)
+    {
+        diskCache = value;
+    }
+
+    public DiskCache getDiskCache()
+    {
+        return diskCache;
+    }
+
+    public void setBufferCapacity(int value)
+    {
+        bufferCapacity = value;
+    }
+
+    public int getBufferCapacity()
+    {
+        return bufferCapacity;
+    }
+
+    // Samples read but not yet processed by the worker
+    public int getBufferOccupancy()
+    {
+        return context != null ? context.buffers[0].size() : 0;
+    }
+
+    // Slices finished but not yet handed to the UI
+    public int getPublisherBacklog()
+    {
+        return publisher.getBacklog();
+    }
+
+    // Metrics of the current run, or null
+    public Metrics getMetrics()
+    {
+        return context != null ? context.metrics : null;
+    }
+
+    // Wait for a cancelled thread to end, interrupting it if it takes too
+    // long. Only called in the background, see stop().
+    private static void join(Thread t)
     {
         if (t == null)
         {
@@ -138,25 +369,96 @@ public class Manager
         }
     }
 
-    public void start(File file, AudioFileFormat format, int pixels)
+    public void start(File file, AudioFileFormat format)
     {
+        stop();
         slices.clear();
-        context = new Context(file, format, pixels);
-        reader = new Reader(context);
-        worker = new Worker(context, slices);
+        context = new Context(file, format, maxColumns, bufferCapacity, channelMode, plan);
+        context.metrics.setBacklog(publisher::getBacklog);
+        context.job.setPriority(priority());
+
+        // Re-use a previous result for the same file & parameters
+        final SpectrumCache.Key key = SpectrumCache.Key.of(file, context.plan, context.columns, context.mode);
+        final SliceStore cached = cache.get(key);
+        if (cached != null)
+        {
+            list.setStore(cached);
+            return;
+        }
+        final SliceStore store = new SliceStore(context.columns, context.tracks * context.plan.bins(), bits);
+        list.setStore(store);
+        final DiskCache.Entry entry = diskCache != null ? diskCache.open(key, store.bins(), bits) : null;
+        final boolean seekable = ParallelWorker.isSupported(format.getFormat(), format.getFrameLength());
+        final boolean exact = entry != null || !(progressive && seekable) || ProgressiveWorker.isExact(context, refine);
+        publisher.setOnFinished(() -> {
+            if (!exact)
+            {
+                return;
+            }
+            cache.put(key, store);
+            if (diskCache != null && entry == null)
+            {
+                diskCache.store(key, store);
+            }
+        });
+        final Sink sink = publisher.open();
 
-        reader.start();
-        worker.start();
+        // The stages of a run mostly wait (for I/O, for each other or for
+        // their tasks on the scheduler), so they run on virtual threads
+        final List<Runnable> stages = new ArrayList<>();
+        if (entry != null)
+        {
+            // Stream a previous result from disk
+            stages.add(new CacheReader(context, sink, entry));
+        }
+        else if (progressive && seekable)
+        {
+            // Coarse previews of all columns, then the full analysis
+            stages.add(new ProgressiveWorker(context, sink, previewTransforms, previewJitter, refine));
+        }
+        else if (parallel && seekable)
+        {
+            // Decode & transform ranges of slices on all cores
+            stages.add(new ParallelWorker(context, sink));
+        }
+        else
+        {
+            // Decode all tracks in one pass, transform each as it arrives
+            stages.add(new Reader(context));
+            stages.addAll(Worker.forTracks(context, sink));
+        }
+        threads = new ArrayList<>();
+        for (Runnable stage : stages)
+        {
+            threads.add(Thread.ofVirtual().name("jspect-run").start(stage));
+        }
     }
 
+    // Cancel the current run without waiting for it: its threads notice
+    // within moments (the context stops running, buffers close, queued tasks
+    // are dropped & the publisher drops their slices) and wind down in the
+    // background, so the next run can start right away. Never blocks the FX
+    // thread.
     public void stop()
     {
         if (context != null)
         {
             context.setRunning(false);
+            context.closeBuffers();
+            context.job.cancel();
         }
+        publisher.close();
 
-        this.join(reader);
-        this.join(worker);
+        final List<Thread> stopped = threads;
+        threads = List.of();
+        if (!stopped.isEmpty())
+        {
+            Thread.ofVirtual().name("jspect-stop").start(() -> {
+                for (Thread t : stopped)
+                {
+                    join(t);
+                }
+            });
+        }
     }
 }
@@ -0,0 +1,370 @@
+package com.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+import javax.sound.sampled.AudioFormat;
+
+// Source which parses WAV/AIFF headers itself and decodes samples straight
+// from a memory mapping of the data chunk, without any intermediate byte[].
+// Large files are mapped in segments since a single mapping is limited to
+// 2 GB.
+// https://www.mmsp.ece.mcgill.ca/Documents/AudioFormats/WAVE/WAVE.html
+// https://www.mmsp.ece.mcgill.ca/Documents/AudioFormats/AIFF/AIFF.html
+public class MappedSource implements Source
+{
+    private static final int SEGMENT_SIZE = 1 << 30;
+
+    private final FileChannel fileChannel;
+    private final AudioFormat format;
+    private final long dataOffset;
+    private final long frameLength;
+    private final int frameSize;
+    private final int bytesPerSample;
+    private final boolean signed;
+    private final boolean floating;
+    private final int framesPerSegment;
+    private final MappedByteBuffer[] segments;
+    private long position = 0;
+
+    private MappedSource(FileChannel channel, AudioFormat format, long dataOffset, long dataSize)
+    {
+        this.fileChannel = channel;
+        this.format = format;
+        this.dataOffset = dataOffset;
+        this.frameSize = format.getFrameSize();
+        this.frameLength = dataSize / frameSize;
+        this.bytesPerSample = format.getSampleSizeInBits() / 8;
+        this.signed = !AudioFormat.Encoding.PCM_UNSIGNED.equals(format.getEncoding());
+        this.floating = AudioFormat.Encoding.PCM_FLOAT.equals(format.getEncoding());
+        this.framesPerSegment = SEGMENT_SIZE / frameSize;
+        this.segments = new MappedByteBuffer[(int)((frameLength + framesPerSegment - 1) / framesPerSegment)];
+    }
+
+    // Returns null if the file isn't a WAV/AIFF file with a supported encoding
+    public static MappedSource open(File file) throws IOException
+    {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try
+        {
+            MappedSource source = parse(channel);
+            if (source != null)
+            {
+                return source;
+            }
+        }
+        catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+        channel.close();
+        return null;
+    }
+
+    private static MappedSource parse(FileChannel channel) throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(12);
+        if (channel.read(header, 0) < 12)
+        {
+            return null;
+        }
+        header.flip();
+        String id = ascii(header, 0);
+        String type = ascii(header, 8);
+        if (id.equals("RIFF") && type.equals("WAVE"))
+        {
+            return parseWave(channel);
+        }
+        if (id.equals("FORM") && (type.equals("AIFF") || type.equals("AIFC")))
+        {
+            return parseAiff(channel, type.equals("AIFC"));
+        }
+        return null;
+    }
+
+    private static MappedSource parseWave(FileChannel channel) throws IOException
+    {
+        AudioFormat format = null;
+        ByteBuffer chunk = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        long offset = 12;
+        while (channel.read(chunk.clear(), offset) == 8)
+        {
+            chunk.flip();
+            String id = ascii(chunk, 0);
+            long size = chunk.getInt(4) & 0xFFFFFFFFL;
+            offset += 8;
+
+            if (id.equals("fmt "))
+            {
+                ByteBuffer fmt = ByteBuffer.allocate((int)Math.min(size, 40)).order(ByteOrder.LITTLE_ENDIAN);
+                channel.read(fmt, offset);
+                if (fmt.position() < 16)
+                {
+                    return null;
+                }
+                int tag = fmt.getShort(0) & 0xFFFF;
+                int channels = fmt.getShort(2) & 0xFFFF;
+                float sampleRate = fmt.getInt(4);
+                int blockAlign = fmt.getShort(12) & 0xFFFF;
+                int bits = fmt.getShort(14) & 0xFFFF;
+                if (tag == 0xFFFE && fmt.position() >= 26)
+                {
+                    tag = fmt.getShort(24) & 0xFFFF; // WAVE_FORMAT_EXTENSIBLE sub-format
+                }
+
+                AudioFormat.Encoding encoding;
+                if (tag == 1)
+                {
+                    encoding = bits == 8 ? AudioFormat.Encoding.PCM_UNSIGNED : AudioFormat.Encoding.PCM_SIGNED;
+                }
+                else if (tag == 3)
+                {
+                    encoding = AudioFormat.Encoding.PCM_FLOAT;
+                }
+                else
+                {
+                    return null;
+                }
+                format = new AudioFormat(encoding, sampleRate, bits, channels, blockAlign, sampleRate, false);
+            }
+            else if (id.equals("data"))
+            {
+                if (format == null || !isSupported(format))
+                {
+                    return null;
+                }
+                // Size may be a placeholder if the file was written while streaming
+                size = Math.min(size, channel.size() - offset);
+                return new MappedSource(channel, format, offset, size);
+            }
+
+            offset += size + (size & 1); // Chunks are padded to an even size
+        }
+        return null;
+    }
+
+    private static MappedSource parseAiff(FileChannel channel, boolean compressed) throws IOException
+    {
+        AudioFormat format = null;
+        ByteBuffer chunk = ByteBuffer.allocate(8).order(ByteOrder.BIG_ENDIAN);
+        long offset = 12;
+        while (channel.read(chunk.clear(), offset) == 8)
+        {
+            chunk.flip();
+            String id = ascii(chunk, 0);
+            long size = chunk.getInt(4) & 0xFFFFFFFFL;
+            offset += 8;
+
+            if (id.equals("COMM"))
+            {
+                ByteBuffer comm = ByteBuffer.allocate((int)Math.min(size, 22)).order(ByteOrder.BIG_ENDIAN);
+                channel.read(comm, offset);
+                if (comm.position() < 18)
+                {
+                    return null;
+                }
+                int channels = comm.getShort(0) & 0xFFFF;
+                int bits = comm.getShort(6) & 0xFFFF;
+                float sampleRate = (float)extended(comm, 8);
+
+                AudioFormat.Encoding encoding = AudioFormat.Encoding.PCM_SIGNED;
+                boolean bigEndian = true;
+                if (compressed)
+                {
+                    if (comm.position() < 22)
+                    {
+                        return null;
+                    }
+                    String compression = ascii(comm, 18);
+                    if (compression.equals("sowt"))
+                    {
+                        bigEndian = false;
+                    }
+                    else if (compression.equalsIgnoreCase("fl32") || compression.equalsIgnoreCase("fl64"))
+                    {
+                        encoding = AudioFormat.Encoding.PCM_FLOAT;
+                    }
+                    else if (!compression.equals("NONE"))
+                    {
+                        return null;
+                    }
+                }
+                int frameSize = channels * ((bits + 7) / 8);
+                format = new AudioFormat(encoding, sampleRate, bits, channels, frameSize, sampleRate, bigEndian);
+            }
+            else if (id.equals("SSND"))
+            {
+                if (format == null || !isSupported(format))
+                {
+                    return null;
+                }
+                ByteBuffer ssnd = ByteBuffer.allocate(4).order(ByteOrder.BIG_ENDIAN);
+                channel.read(ssnd, offset);
+                long skip = 8 + (ssnd.getInt(0) & 0xFFFFFFFFL); // Offset & block size fields
+                size = Math.min(size, channel.size() - offset) - skip;
+                return new MappedSource(channel, format, offset + skip, Math.max(0, size));
+            }
+
+            offset += size + (size & 1); // Chunks are padded to an even size
+        }
+        return null;
+    }
+
+    private static boolean isSupported(AudioFormat format)
+    {
+        int bits = format.getSampleSizeInBits();
+        return format.getChannels() > 0
+            && format.getFrameSize() >= format.getChannels() * bits / 8
+            && (bits == 8 || bits == 16 || bits == 24 || bits == 32 || bits == 64)
+            && Decoder.isSupported(format);
+    }
+
+    private static String ascii(ByteBuffer buffer, int index)
+    {
+        byte[] bytes = new byte[4];
+        buffer.get(index, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    // 80-bit IEEE 754 extended precision, as used for the AIFF sample rate
+    private static double extended(ByteBuffer buffer, int index)
+    {
+        int exponent = buffer.getShort(index) & 0xFFFF;
+        long mantissa = buffer.getLong(index + 2);
+        double sign = (exponent & 0x8000) != 0 ? -1 : 1;
+        exponent &= 0x7FFF;
+        if (exponent == 0 && mantissa == 0)
+        {
+            return 0;
+        }
+        return sign * Math.scalb((double)(mantissa >>> 1) * 2, exponent - 16383 - 63);
+    }
+
+    private MappedByteBuffer segment(int index) throws IOException
+    {
+        if (segments[index] == null)
+        {
+            long start = (long)index * framesPerSegment * frameSize;
+            long size = Math.min((long)framesPerSegment, frameLength - (long)index * framesPerSegment) * frameSize;
+            MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, dataOffset + start, size);
+            buffer.order(format.isBigEndian() ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+            segments[index] = buffer;
+        }
+        return segments[index];
+    }
+
+    @Override
+    public AudioFormat getFormat()
+    {
+        return format;
+    }
+
+    @Override
+    public long getFrameLength()
+    {
+        return frameLength;
+    }
+
+    @Override
+    public void seek(long frame) throws IOException
+    {
+        position = Math.min(frame, frameLength);
+    }
+
+    @Override
+    public int read(double[] buffer, int offset, int length, int channel) throws IOException
+    {
+        if (position >= frameLength)
+        {
+            return -1;
+        }
+
+        // Don't read across segments
+        final int index = (int)(position / framesPerSegment);
+        final int first = (int)(position - (long)index * framesPerSegment);
+        final ByteBuffer data = segment(index);
+        final int frames = Math.min(length, data.limit() / frameSize - first);
+
+        decode(data, first * frameSize + channel * bytesPerSample, buffer, offset, frames);
+        position += frames;
+        return frames;
+    }
+
+    @Override
+    public int read(double[][] buffers, int offset, int length) throws IOException
+    {
+        if (position >= frameLength)
+        {
+            return -1;
+        }
+
+        final int index = (int)(position / framesPerSegment);
+        final int first = (int)(position - (long)index * framesPerSegment);
+        final ByteBuffer data = segment(index);
+        final int frames = Math.min(length, data.limit() / frameSize - first);
+
+        // Channels are interleaved, so this touches the same pages
+        for (int channel = 0; channel < buffers.length; channel++)
+        {
+            decode(data, first * frameSize + channel * bytesPerSample, buffers[channel], offset, frames);
+        }
+        position += frames;
+        return frames;
+    }
+
+    // Decode frames samples of one channel, the first of which is at byte i
+    private void decode(ByteBuffer data, int i, double[] buffer, int offset, int frames)
+    {
+        final int end = offset + frames;
+        switch (bytesPerSample)
+        {
+            case 1:
+                for (int j = offset; j < end; j++, i += frameSize)
+                {
+                    buffer[j] = signed ? data.get(i) : (data.get(i) & 0xFF) - 128;
+                }
+                break;
+            case 2:
+                for (int j = offset; j < end; j++, i += frameSize)
+                {
+                    buffer[j] = data.getShort(i);
+                }
+                break;
+            case 3:
+                final boolean bigEndian = format.isBigEndian();
+                for (int j = offset; j < end; j++, i += frameSize)
+                {
+                    int lo = data.get(bigEndian ? i + 2 : i) & 0xFF;
+                    int mid = data.get(i + 1) & 0xFF;
+                    int hi = data.get(bigEndian ? i : i + 2); // Sign-extended
+                    buffer[j] = (hi << 16) | (mid << 8) | lo;
+                }
+                break;
+            case 4:
+                for (int j = offset; j < end; j++, i += frameSize)
+                {
+                    buffer[j] = floating ? data.getFloat(i) : data.getInt(i);
+                }
+                break;
+            case 8:
+                for (int j = offset; j < end; j++, i += frameSize)
+                {
+                    buffer[j] = data.getDouble(i);
+                }
+                break;
+        }
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        fileChannel.close();
+    }
+}
@@ -0,0 +1,97 @@
+package com.example;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+// Counters & timers of one analysis run, updated by the pipeline threads and
+// sampled by anyone interested (e.g. the UI overlay). Each sample reports
+// rates since the previous one. The same stages are also recorded as JFR
+// events, see Events.
+public class Metrics
+{
+    private final long startTime = System.nanoTime();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder transforms = new LongAdder();
+    private final LongAdder slices = new LongAdder();
+    private final LongAdder readerWait = new LongAdder(); // ns waiting for free space
+    private final LongAdder workerWait = new LongAdder(); // ns waiting for samples
+    private volatile IntSupplier occupancy = () -> 0;
+    private volatile IntSupplier backlog = () -> 0;
+    private Snapshot last = null;
+
+    public record Snapshot(
+        double seconds,           // Since the start of the run
+        long bytesRead,
+        long transforms,
+        long slices,
+        double bytesPerSecond,    // Rates since the previous sample
+        double transformsPerSecond,
+        double slicesPerSecond,
+        double readerWait,        // Fraction of the time since the previous sample
+        double workerWait,
+        int bufferOccupancy,      // Samples read but not yet analysed
+        int backlog,              // Slices not yet handed to the UI
+        long readerWaitNanos,
+        long workerWaitNanos) {}
+
+    public void setOccupancy(IntSupplier value)
+    {
+        occupancy = value;
+    }
+
+    public void setBacklog(IntSupplier value)
+    {
+        backlog = value;
+    }
+
+    public void addBytesRead(long count)
+    {
+        bytesRead.add(count);
+    }
+
+    public void addTransforms(long count)
+    {
+        transforms.add(count);
+    }
+
+    public void addSlices(long count)
+    {
+        slices.add(count);
+    }
+
+    public void addReaderWait(long nanos)
+    {
+        readerWait.add(nanos);
+    }
+
+    public void addWorkerWait(long nanos)
+    {
+        workerWait.add(nanos);
+    }
+
+    public synchronized Snapshot sample()
+    {
+        final double seconds = (System.nanoTime() - startTime) / 1e9;
+        final long bytes = bytesRead.sum();
+        final long ffts = transforms.sum();
+        final long count = slices.sum();
+        final long readerNanos = readerWait.sum();
+        final long workerNanos = workerWait.sum();
+
+        final Snapshot previous = last != null
+            ? last
+            : new Snapshot(0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+        final double interval = Math.max(1e-9, seconds - previous.seconds());
+        last = new Snapshot(seconds, bytes, ffts, count,
+            (bytes - previous.bytesRead()) / interval,
+            (ffts - previous.transforms()) / interval,
+            (count - previous.slices()) / interval,
+            (readerNanos - previous.readerWaitNanos()) / 1e9 / interval,
+            (workerNanos - previous.workerWaitNanos()) / 1e9 / interval,
+            occupancy.getAsInt(),
+            backlog.getAsInt(),
+            readerNanos,
+            workerNanos);
+        return last;
+    }
+}
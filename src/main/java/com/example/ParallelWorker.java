@@ -0,0 +1,94 @@
+package com.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+// Splits the slices into ranges which are decoded & transformed on separate
+// cores. Each range seeks to its first frame (plus one chunk of overlap for
+// the first FFT), so this requires a format with fixed-size frames.
+public class ParallelWorker implements Runnable
+{
+    private static final int MAX_RANGE = 64; // Columns per task, to yield to other runs soon
+
+    final Manager.Context context;
+    final Sink sink;
+    final int threads;
+
+    public ParallelWorker(Manager.Context c, Sink s)
+    {
+        this.context = c;
+        this.sink = s;
+        this.threads = Scheduler.shared().getThreads();
+    }
+
+    public static boolean isSupported(AudioFormat format, long frameLength)
+    {
+        return Decoder.isSupported(format)
+            && format.getFrameSize() != AudioSystem.NOT_SPECIFIED
+            && frameLength != AudioSystem.NOT_SPECIFIED;
+    }
+
+    // Several ranges per core to balance uneven progress, but not so large
+    // that a range holds up the scheduler
+    static int rangeSize(int columns, int threads)
+    {
+        return Math.max(1, Math.min(MAX_RANGE, (int)Math.ceil((double)columns / (threads * 4))));
+    }
+
+    @Override
+    public void run()
+    {
+        final int rangeSize = rangeSize(context.columns, threads);
+        try
+        {
+            List<Future<List<double[]>>> ranges = new ArrayList<>();
+            for (int first = 0; first < context.columns; first += rangeSize)
+            {
+                final int from = first;
+                final int to = Math.min(first + rangeSize, context.columns);
+                ranges.add(context.job.submit(() -> analyse(from, to)));
+            }
+
+            // Publish ranges in order
+            for (Future<List<double[]>> range : ranges)
+            {
+                for (double[] slice : range.get())
+                {
+                    if (!context.isRunning() || !sink.publish(context.reduce(slice)))
+                    {
+                        return;
+                    }
+                }
+            }
+            sink.finish();
+        }
+        catch (InterruptedException | CancellationException e)
+        {
+            return;
+        }
+        catch (ExecutionException e)
+        {
+            e.getCause().printStackTrace();
+        }
+    }
+
+    private List<double[]> analyse(int from, int to) throws IOException, UnsupportedAudioFileException
+    {
+        final long numFrames = context.fileFormat.getFrameLength();
+        final long begin = Math.min((long)from * context.samplesPerSlice, numFrames);
+        final long end = Math.min((long)to * context.samplesPerSlice, numFrames);
+        try (Source source = Source.open(context.file))
+        {
+            return Analyser.analyse(source, context.plan, context.samplesPerSlice,
+                begin, end, context.mode, context::isRunning, context.metrics);
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.example;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// How samples are turned into spectrogram columns, independent of the file:
+// FFT size, window, hop between FFTs and how the FFTs of a column are
+// averaged. The window coefficients and FFT tables are computed once per
+// plan, and plans are shared (of() returns the same instance for the same
+// parameters while that is still referenced), so every analyser and every
+// file with the same settings reuses them, while plans that fell out of
+// use, e.g. bands of earlier viewports, can be collected. A plan may be
+// limited to a band of frequencies, whose bins are computed by a chirp-Z
+// transform of the same samples instead of an FFT.
+public final class Plan
+{
+    public enum Window
+    {
+        HANN("Hann"),
+        HAMMING("Hamming"),
+        BLACKMAN_HARRIS("Blackman-Harris");
+
+        private final String label;
+
+        Window(String label)
+        {
+            this.label = label;
+        }
+
+        @Override
+        public String toString()
+        {
+            return label;
+        }
+
+        // Coefficient i of a periodic window of size n
+        public double coefficient(int i, int n)
+        {
+            final double x = 2 * Math.PI * i / n;
+            switch (this)
+            {
+                case HANN:
+                    return 0.5 - 0.5 * Math.cos(x);
+                case BLACKMAN_HARRIS:
+                    return 0.35875 - 0.48829 * Math.cos(x) + 0.14128 * Math.cos(2 * x) - 0.01168 * Math.cos(3 * x);
+                default:
+                    return 0.53836 - 0.46164 * Math.cos(x);
+            }
+        }
+    }
+
+    // How the FFTs of one column are combined
+    public enum Averaging
+    {
+        COMPLEX("Complex mean"), // Of the spectra, cancels out uncorrelated noise
+        POWER("Power mean"), // Welch's method
+        PEAK("Peak hold"); // Maximum power per bin
+
+        private final String label;
+
+        Averaging(String label)
+        {
+            this.label = label;
+        }
+
+        @Override
+        public String toString()
+        {
+            return label;
+        }
+    }
+
+    // Weakly referenced, the entries of collected plans are removed by of()
+    private static final Map<String, Interned> plans = new ConcurrentHashMap<>(); // Before DEFAULT
+    private static final ReferenceQueue<Plan> collected = new ReferenceQueue<>();
+
+    public static final int[] SIZES = { 256, 512, 1024, 2048, 4096, 8192, 16384 };
+    public static final Plan DEFAULT = of(1024, Window.HAMMING, 0, Averaging.COMPLEX);
+
+    public final int fftSize;
+    public final Window window;
+    public final int hop; // Samples between FFTs within a column
+    public final Averaging averaging;
+    public final double low; // Band of the bins, fractions of the Nyquist frequency
+    public final double high;
+    private final int bins;
+    private final double[] coefficients;
+    private final Transform transform;
+
+    private Plan(int fftSize, Window window, int hop, Averaging averaging, double low, double high, int bins)
+    {
+        this.fftSize = fftSize;
+        this.window = window;
+        this.hop = hop;
+        this.averaging = averaging;
+        this.low = low;
+        this.high = high;
+        this.bins = bins;
+        this.transform = isBand() ? new ChirpZ(fftSize, bins, low, high) : new RealFFT(fftSize);
+        this.coefficients = new double[fftSize];
+        for (int i = 0; i < fftSize; i++)
+        {
+            coefficients[i] = window.coefficient(i, fftSize);
+        }
+    }
+
+    // A hop of 0 means no overlap, i.e. a hop of fftSize
+    public static Plan of(int fftSize, Window window, int hop, Averaging averaging)
+    {
+        return of(fftSize, window, hop, averaging, 0, 1, fftSize / 2 + 1);
+    }
+
+    // Only the given number of bins spread over the band [low, high], in
+    // fractions of the Nyquist frequency
+    public static Plan of(int fftSize, Window window, int hop, Averaging averaging, double low, double high, int bins)
+    {
+        if (fftSize < 2 || (fftSize & (fftSize - 1)) != 0)
+        {
+            throw new IllegalArgumentException("FFT size must be a power of two >= 2: " + fftSize);
+        }
+        if (hop < 0 || hop > fftSize)
+        {
+            throw new IllegalArgumentException("Hop must be between 0 (no overlap) and the FFT size: " + hop);
+        }
+        if (!(low >= 0 && low < high && high <= 1) || bins < 2)
+        {
+            throw new IllegalArgumentException("Band must be within [0, 1] with at least 2 bins: " + low + ", " + high + ", " + bins);
+        }
+        final int h = hop == 0 ? fftSize : hop;
+        for (Interned stale; (stale = (Interned)collected.poll()) != null; )
+        {
+            plans.remove(stale.key, stale);
+        }
+        final Plan[] plan = new Plan[1]; // Strongly referenced until returned
+        plans.compute(fftSize + " " + window + " " + h + " " + averaging + " " + low + " " + high + " " + bins, (k, interned) -> {
+            plan[0] = interned == null ? null : interned.get();
+            if (plan[0] == null)
+            {
+                plan[0] = new Plan(fftSize, window, h, averaging, low, high, bins);
+                return new Interned(k, plan[0]);
+            }
+            return interned;
+        });
+        return plan[0];
+    }
+
+    public static Plan of(int fftSize)
+    {
+        return of(fftSize, DEFAULT.window, 0, DEFAULT.averaging);
+    }
+
+    public Plan withFFTSize(int value)
+    {
+        return of(value, window, hop == fftSize ? 0 : Math.min(hop, value), averaging,
+            low, high, isBand() ? bins : value / 2 + 1);
+    }
+
+    public Plan withWindow(Window value)
+    {
+        return of(fftSize, value, hop, averaging, low, high, bins);
+    }
+
+    // A hop of 0 means no overlap
+    public Plan withHop(int value)
+    {
+        return of(fftSize, window, value, averaging, low, high, bins);
+    }
+
+    public Plan withBand(double low, double high, int bins)
+    {
+        return of(fftSize, window, hop, averaging, low, high, bins);
+    }
+
+    // All bins of the FFT
+    public Plan withoutBand()
+    {
+        return of(fftSize, window, hop, averaging);
+    }
+
+    // Whether this computes anything but all bins of the FFT
+    public boolean isBand()
+    {
+        return low > 0 || high < 1 || bins != fftSize / 2 + 1;
+    }
+
+    public int bins()
+    {
+        return bins;
+    }
+
+    // Number of columns for a file: one per hop, unless that exceeds the maximum
+    public int columns(long numFrames, int maxColumns)
+    {
+        return (int)Math.max(1, Math.min(maxColumns, Math.ceil((double)Math.max(1, numFrames) / hop)));
+    }
+
+    public int samplesPerSlice(long numFrames, int columns)
+    {
+        return (int)Math.ceil((double)Math.max(1, numFrames) / columns);
+    }
+
+    // Samples between FFTs for columns of samplesPerSlice samples. One FFT
+    // ending at the last sample of a column is all a column no longer than
+    // the FFT can use: more would overlap it (and each other) and only
+    // smear it with the neighbouring columns.
+    public int stride(int samplesPerSlice)
+    {
+        return samplesPerSlice <= fftSize ? samplesPerSlice : hop;
+    }
+
+    // FFTs per column of samplesPerSlice samples
+    public int transforms(int samplesPerSlice)
+    {
+        return (samplesPerSlice + stride(samplesPerSlice) - 1) / stride(samplesPerSlice);
+    }
+
+    // Shared and read-only
+    double[] window()
+    {
+        return coefficients;
+    }
+
+    // A transform for the plan's size & bins sharing its tables
+    Transform newTransform()
+    {
+        return transform.copy();
+    }
+
+    @Override
+    public String toString()
+    {
+        final String s = fftSize + " " + window + " hop " + hop + " " + averaging;
+        return isBand() ? s + " band " + low + "-" + high + " " + bins + " bins" : s;
+    }
+
+    private static final class Interned extends WeakReference<Plan>
+    {
+        final String key;
+
+        Interned(String key, Plan plan)
+        {
+            super(plan, collected);
+            this.key = key;
+        }
+    }
+}
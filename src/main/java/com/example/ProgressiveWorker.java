@@ -0,0 +1,254 @@
+package com.example;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+// Fills the whole width first and refines it afterwards, instead of one
+// pass left to right. The first pass previews every STRIDE-th column and
+// shows it for the next STRIDE columns; each following pass halves the
+// stride, until every column has its own preview. A preview averages at
+// most a fixed number of FFTs, spread evenly (or at random within equal
+// strata) over the column, seeking past the rest, so its cost depends on
+// the number of columns and not on the length of the file. Finally, unless
+// disabled, ranges of columns are analysed in full (Welch averaged) on all
+// cores, replacing the previews as they finish. Requires a seekable source,
+// like ParallelWorker. Previews are computed a batch of columns at a time on
+// the scheduler, one batch after the other.
+public class ProgressiveWorker implements Runnable
+{
+    private static final int STRIDE = 16;
+    private static final int BATCH = 32; // Previews per task
+
+    final Manager.Context context;
+    final Sink sink;
+    final int threads;
+    final int transforms; // Per preview
+    final boolean jitter;
+    final boolean refine;
+
+    public ProgressiveWorker(Manager.Context c, Sink s, int transforms, boolean jitter, boolean refine)
+    {
+        if (transforms < 1)
+        {
+            throw new IllegalArgumentException("Transforms per preview must be positive: " + transforms);
+        }
+        this.context = c;
+        this.sink = s;
+        this.threads = Scheduler.shared().getThreads();
+        this.transforms = transforms;
+        this.jitter = jitter;
+        this.refine = refine;
+    }
+
+    // FFTs per preview, at most one per chunk of the column
+    private int previewTransforms()
+    {
+        return Math.min(transforms, context.plan.transforms(context.samplesPerSlice));
+    }
+
+    // Whether the final result is the full analysis, i.e. worth caching
+    public static boolean isExact(Manager.Context c, boolean refine)
+    {
+        return refine || c.samplesPerSlice <= c.plan.fftSize;
+    }
+
+    @Override
+    public void run()
+    {
+        final int columns = context.columns;
+        final int n = context.plan.fftSize;
+        final int samplesPerSlice = context.samplesPerSlice;
+        try
+        {
+            // Coarse to fine previews. With several FFTs per preview, each
+            // covers one block: no overlap between them.
+            final int k = previewTransforms();
+            final Plan plan = k == 1 ? context.plan : context.plan.withHop(0);
+            final Analyser[] analysers = new Analyser[context.tracks];
+            for (int t = 0; t < context.tracks; t++)
+            {
+                analysers[t] = new Analyser(plan, k * n);
+            }
+            final double[][] blocks = context.mode.buffers(context.audioFormat.getChannels(), k * n);
+            try (Source source = Source.open(context.file))
+            {
+                for (int stride = STRIDE; stride > 0; stride /= 2)
+                {
+                    // Columns of this pass
+                    final int[] pass = new int[(columns + stride - 1) / stride];
+                    int length = 0;
+                    for (int c = 0; c < columns; c += stride)
+                    {
+                        if (stride == STRIDE || c % (2 * stride) != 0) // Not done in an earlier pass
+                        {
+                            pass[length++] = c;
+                        }
+                    }
+
+                    for (int first = 0; first < length; first += BATCH)
+                    {
+                        if (!context.isRunning())
+                        {
+                            return;
+                        }
+
+                        final int[] batch = Arrays.copyOfRange(pass, first, Math.min(first + BATCH, length));
+                        final double[][] slices = context.job.submit(() -> {
+                            final double[][] previews = new double[batch.length][];
+                            for (int i = 0; i < batch.length && context.isRunning(); i++)
+                            {
+                                previews[i] = preview(source, analysers, blocks, k, batch[i]);
+                            }
+                            return previews;
+                        }).get();
+                        for (int i = 0; i < batch.length; i++)
+                        {
+                            for (int c = batch[i]; slices[i] != null && c < Math.min(batch[i] + stride, columns); c++)
+                            {
+                                if (!sink.set(c, slices[i]))
+                                {
+                                    return;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            if (samplesPerSlice <= n || !refine)
+            {
+                sink.finish();
+                return;
+            }
+
+            // Full analysis of ranges of columns on all cores, replacing the
+            // previews of a range once it's done (in order, as they're queued)
+            final int rangeSize = ParallelWorker.rangeSize(columns, threads);
+            final List<Future<Range>> ranges = new ArrayList<>();
+            for (int first = 0; first < columns; first += rangeSize)
+            {
+                final int from = first;
+                final int to = Math.min(first + rangeSize, columns);
+                ranges.add(context.job.submit(() -> analyse(from, to)));
+            }
+            for (Future<Range> future : ranges)
+            {
+                final Range range = future.get();
+                for (int j = 0; j < range.slices().size() && range.from() + j < range.to(); j++)
+                {
+                    if (!context.isRunning() || !sink.set(range.from() + j, context.reduce(range.slices().get(j))))
+                    {
+                        return;
+                    }
+                }
+            }
+            if (context.isRunning())
+            {
+                sink.finish();
+            }
+        }
+        catch (InterruptedException | CancellationException e)
+        {
+            return;
+        }
+        catch (ExecutionException e)
+        {
+            context.fail(e.getCause());
+            e.getCause().printStackTrace();
+        }
+        catch (Exception e)
+        {
+            context.fail(e);
+            e.printStackTrace();
+        }
+    }
+
+    // Average of k FFTs of chunks in the middle of k equal strata of a
+    // column, or at random positions within them. With at most one chunk per
+    // column, the FFT of the chunk at its end, i.e. the final result.
+    private double[] preview(Source source, Analyser[] analysers, double[][] blocks, int k, int column) throws IOException
+    {
+        final int n = context.plan.fftSize;
+        final int samplesPerSlice = context.samplesPerSlice;
+        final long numFrames = context.fileFormat.getFrameLength();
+        final long start = Math.min((long)column * samplesPerSlice, numFrames);
+        final long length = Math.min((long)(column + 1) * samplesPerSlice, numFrames) - start;
+        final SplittableRandom random = new SplittableRandom(column);
+
+        // Frames outside of the file are silent
+        for (double[] block : blocks)
+        {
+            Arrays.fill(block, 0);
+        }
+        int numFramesRead = 0;
+        for (int j = 0; j < k; j++)
+        {
+            final long stratum = start + j * length / k;
+            final long size = start + (j + 1) * length / k - stratum;
+            final long begin = samplesPerSlice <= n
+                ? start + length - n
+                : Math.max(0, Math.min(numFrames - n,
+                    jitter && size > n ? stratum + random.nextLong(size - n + 1) : stratum + (size - n) / 2));
+            numFramesRead += read(source, blocks, j * n, begin);
+        }
+
+        // The last of k * n samples completes the slice
+        final double[][] slices = new double[analysers.length][];
+        for (int t = 0; t < analysers.length; t++)
+        {
+            for (int i = 0; i < k * n; i++)
+            {
+                slices[t] = analysers[t].push(blocks[t][i]);
+            }
+        }
+        context.metrics.addBytesRead((long)numFramesRead * context.audioFormat.getFrameSize());
+        context.metrics.addTransforms((long)k * analysers.length);
+        context.metrics.addSlices(1);
+        return context.reduce(ChannelMode.join(slices));
+    }
+
+    // Read the chunk of frames [begin, begin + n) to blocks[offset, offset + n),
+    // returns the number of frames read
+    private int read(Source source, double[][] blocks, int offset, long begin) throws IOException
+    {
+        final int n = context.plan.fftSize;
+        final long numFrames = context.fileFormat.getFrameLength();
+        final long first = Math.max(0, begin);
+        final int skip = (int)(first - begin);
+        final int length = (int)Math.max(0, Math.min(n - skip, numFrames - first));
+        int numFramesRead = 0;
+        source.seek(first);
+        while (numFramesRead < length)
+        {
+            int count = context.mode.read(source, blocks, offset + skip + numFramesRead, length - numFramesRead);
+            if (count == -1)
+            {
+                break;
+            }
+            numFramesRead += count;
+        }
+        return numFramesRead;
+    }
+
+    private record Range(int from, int to, List<double[]> slices) {}
+
+    // Scheduler: full analysis of the columns [from, to)
+    private Range analyse(int from, int to) throws IOException, UnsupportedAudioFileException
+    {
+        final long numFrames = context.fileFormat.getFrameLength();
+        final long begin = Math.min((long)from * context.samplesPerSlice, numFrames);
+        final long end = Math.min((long)to * context.samplesPerSlice, numFrames);
+        try (Source source = Source.open(context.file))
+        {
+            return new Range(from, to, Analyser.analyse(source, context.plan, context.samplesPerSlice,
+                begin, end, context.mode, context::isRunning, context.metrics));
+        }
+    }
+}
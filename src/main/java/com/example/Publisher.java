@@ -0,0 +1,156 @@
+package com.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javafx.animation.AnimationTimer;
+import javafx.beans.property.ReadOnlyListWrapper;
+
+// Hands finished slices from worker threads to the FX thread. Workers stage
+// slices in a bounded queue, and once per pulse everything staged is added
+// to the list with a single addAll(), i.e. a single change event. A worker
+// that gets too far ahead of the UI waits for the next pulse. Replaced
+// slices are set individually, in the order they were published.
+//
+// Each run publishes through its own sink, tagged with the generation of
+// the run. Opening a new run or closing the current one makes the sinks of
+// earlier runs stale: their slices are dropped, and their workers are told
+// to quit (publish() returns false) instead of being waited for.
+public class Publisher extends AnimationTimer
+{
+    private static final int CAPACITY = 4096;
+
+    private final ReadOnlyListWrapper<double[]> slices;
+    private final BlockingQueue<Update> staging = new ArrayBlockingQueue<>(CAPACITY);
+    private final List<Update> updates = new ArrayList<>();
+    private final List<double[]> batch = new ArrayList<>();
+    private volatile long generation = 0; // Of the current run
+    private volatile long finished = -1; // Generation of the last finished run
+    private Runnable onFinished = null;
+
+    private record Update(long generation, int index, double[] slice) {} // Index -1 appends
+
+    public Publisher(ReadOnlyListWrapper<double[]> slices)
+    {
+        this.slices = slices;
+    }
+
+    // FX thread: called once all slices of a run have been added to the list
+    public void setOnFinished(Runnable value)
+    {
+        onFinished = value;
+    }
+
+    // FX thread: start a new run, returns the sink for its workers
+    public Sink open()
+    {
+        final long run = ++generation;
+        staging.clear();
+        start();
+        return new Sink() {
+            // Worker thread: returns false once the run is stale
+            @Override
+            public boolean publish(double[] slice) throws InterruptedException
+            {
+                return stage(new Update(run, -1, slice));
+            }
+
+            // Worker thread: returns false once the run is stale
+            @Override
+            public boolean set(int index, double[] slice) throws InterruptedException
+            {
+                return stage(new Update(run, index, slice));
+            }
+
+            // Worker thread: all slices have been published
+            @Override
+            public void finish()
+            {
+                finished = run;
+            }
+        };
+    }
+
+    // FX thread: make the current run stale, stop draining & drop anything
+    // still staged, wakes up any worker waiting for space
+    public void close()
+    {
+        generation++;
+        stop();
+        staging.clear();
+    }
+
+    private boolean stage(Update update) throws InterruptedException
+    {
+        while (update.generation() == generation)
+        {
+            if (staging.offer(update, 10, TimeUnit.MILLISECONDS))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Slices staged but not yet added to the list
+    public int getBacklog()
+    {
+        return staging.size();
+    }
+
+    @Override
+    public void handle(long now)
+    {
+        staging.drainTo(updates);
+        if (!updates.isEmpty())
+        {
+            Events.Publish event = new Events.Publish();
+            event.begin();
+            for (Update update : updates)
+            {
+                // Staged just before the run went stale
+                if (update.generation() != generation)
+                {
+                    continue;
+                }
+
+                // Consecutive appends are added at once
+                if (update.index() == -1 || update.index() == slices.size() + batch.size())
+                {
+                    batch.add(update.slice());
+                    continue;
+                }
+                addBatch();
+                slices.set(update.index(), update.slice());
+            }
+            addBatch();
+            event.slices = updates.size();
+            event.backlog = staging.size();
+            event.commit();
+            updates.clear();
+        }
+
+        // Everything published before finish() has been drained
+        if (finished == generation && staging.isEmpty())
+        {
+            finished = -1;
+            stop();
+            if (onFinished != null)
+            {
+                onFinished.run();
+            }
+        }
+    }
+
+    private void addBatch()
+    {
+        if (!batch.isEmpty())
+        {
+            slices.addAll(batch);
+            batch.clear();
+        }
+    }
+}
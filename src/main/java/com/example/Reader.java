@@ -1,10 +1,8 @@
 package com.example;
 
-import javax.sound.sampled.AudioFormat;
-import javax.sound.sampled.AudioInputStream;
-import javax.sound.sampled.AudioSystem;
+import java.io.InterruptedIOException;
 
-public class Reader extends Thread 
+public class Reader implements Runnable
 {
     final Manager.Context context;
 
@@ -16,75 +14,80 @@ public class Reader extends Thread
     @Override
     public void run()
     {
-        try
+        final RingBuffer[] buffers = context.buffers;
+        final Metrics metrics = context.metrics;
+
+        // Open stream
+        try (Source source = Source.open(context.file))
         {
-            // Open stream
-            AudioInputStream in = AudioSystem.getAudioInputStream(context.file);
-            
-            // Parse format
-            AudioFormat format = in.getFormat();
-            int bytesPerFrame = format.getFrameSize();
-            if (bytesPerFrame == AudioSystem.NOT_SPECIFIED)
+            source.setJob(context.job);
+            final int frameSize = Math.max(0, source.getFormat().getFrameSize());
+
+            // Tracks are decoded straight into their buffers, which all have
+            // the same capacity & write offset as they're written in lockstep
+            final double[][] arrays = new double[buffers.length][];
+            for (int t = 0; t < buffers.length; t++)
             {
-                bytesPerFrame = 1;
+                arrays[t] = buffers[t].array();
             }
-            final int bitsPerSample = format.getSampleSizeInBits();
-            final int bytesPerSample = bitsPerSample / 8;
-            // final int maxValue = (1 << bitsPerSample) - 1;
-
-            // Allocate intermediate buffer (1/2 size of context's buffer)
-            final int readSize = context.chunkSize * context.numChunks;
-            final byte[] buffer = new byte[bytesPerFrame * readSize];
 
-            int numBytesRead = 0;
-            int position = 0;
-            int previous = 0;
             while (context.isRunning())
             {
-                // Read data
-                if ((numBytesRead = in.read(buffer)) == -1)
+                // Wait for the workers to free up space
+                Events.Wait wait = new Events.Wait();
+                wait.begin();
+                final long waitTime = System.nanoTime();
+                int length = Integer.MAX_VALUE;
+                for (RingBuffer buffer : buffers)
+                {
+                    int free = buffer.claim();
+                    length = free == -1 ? -1 : Math.min(length, free);
+                    if (length == -1)
+                    {
+                        break;
+                    }
+                }
+                metrics.addReaderWait(System.nanoTime() - waitTime);
+                wait.stage = "reader";
+                wait.commit();
+                if (length == -1)
                 {
                     break;
                 }
 
-                final int channel = 0; // Use channel #0
-                for (int i = 0; i < numBytesRead; i += bytesPerFrame)
+                // Read data straight into the free part of the buffers, one
+                // chunk at a time so the workers can start early
+                Events.Read read = new Events.Read();
+                read.begin();
+                length = Math.min(length, context.plan.fftSize);
+                int numFramesRead = context.mode.read(source, arrays, buffers[0].writeOffset(), length);
+                if (numFramesRead == -1)
                 {
-                    // Interpret bytes into sample
-                    int sample = 0;
-                    for (int j = 0; j < bytesPerSample; j++)
-                    {
-                        int shift = j * 8;
-                        if (format.isBigEndian())
-                        {
-                            shift = (bytesPerSample - j) * 8;
-                        }
-                        int index = i + bytesPerSample * channel + j;
-                        sample |= (buffer[index] & 0xFF) << shift;
-                    }
-                    context.buffer[position] = (double)sample;
-                    position = (position + 1) % context.buffer.length;
-
-                    // Signal worker if we have enough data
-                    if ((position > previous ? position : context.buffer.length + position) - previous == readSize)
-                    {
-                        context.signalWorker(previous = position);
-                    }
+                    break;
                 }
+                for (RingBuffer buffer : buffers)
+                {
+                    buffer.publish(numFramesRead);
+                }
+                read.frames = numFramesRead;
+                read.bytes = (long)numFramesRead * frameSize;
+                read.commit();
+                metrics.addBytesRead(read.bytes);
             }
-
-            // Process left-over data
-            if (position != previous)
-            {
-                context.signalWorker(position);
-            }
-
-            // Tell worker to quit
-            context.signalWorker(-1);
+        }
+        catch (InterruptedException | InterruptedIOException e)
+        {
+            return;
         }
         catch (Exception e)
         {
+            context.fail(e);
             e.printStackTrace();
         }
+        finally
+        {
+            // Tell workers to quit once they have drained their buffers
+            context.closeBuffers();
+        }
     }
 }
@@ -0,0 +1,93 @@
+package com.example;
+
+// FFT of n real samples returning only the n/2 + 1 unique bins. The input is
+// packed as n/2 complex values z[k] = x[2k] + i*x[2k+1], transformed with a
+// half-size FFT, then split using the Hermitian symmetry of the spectrum.
+public class RealFFT implements Transform
+{
+    private final int n;
+    private final int m;
+    private final FFT fft;
+    private final double[] zr;
+    private final double[] zi;
+    private final double[] cos;
+    private final double[] sin;
+
+    public RealFFT(int n)
+    {
+        if (n < 2 || (n & (n - 1)) != 0)
+        {
+            throw new IllegalArgumentException("FFT size must be a power of two >= 2: " + n);
+        }
+        this.n = n;
+        this.m = n / 2;
+        this.fft = new FFT(m);
+        this.zr = new double[m];
+        this.zi = new double[m];
+
+        // Twiddle factors w^k = exp(-2*pi*i*k/n) for k <= n/2
+        this.cos = new double[m + 1];
+        this.sin = new double[m + 1];
+        for (int k = 0; k <= m; k++)
+        {
+            double arg = -2 * Math.PI * k / n;
+            cos[k] = Math.cos(arg);
+            sin[k] = Math.sin(arg);
+        }
+    }
+
+    // Same size & (immutable) tables, own scratch buffers
+    private RealFFT(RealFFT other)
+    {
+        this.n = other.n;
+        this.m = other.m;
+        this.fft = other.fft;
+        this.cos = other.cos;
+        this.sin = other.sin;
+        this.zr = new double[m];
+        this.zi = new double[m];
+    }
+
+    // A copy that can be used on another thread
+    public RealFFT copy()
+    {
+        return new RealFFT(this);
+    }
+
+    public int size()
+    {
+        return n;
+    }
+
+    public int bins()
+    {
+        return m + 1;
+    }
+
+    // Transforms in[0, n) into re/im[0, n/2] without modifying the input
+    public void transform(double[] in, double[] re, double[] im)
+    {
+        // Pack even/odd samples
+        for (int k = 0; k < m; k++)
+        {
+            zr[k] = in[2 * k];
+            zi[k] = in[2 * k + 1];
+        }
+
+        fft.transform(zr, zi);
+
+        // Split Z into the spectra of the even (E) and odd (O) samples, then
+        // X_k = E_k + w^k * O_k
+        for (int k = 0; k <= m; k++)
+        {
+            final int a = k == m ? 0 : k;
+            final int b = k == 0 ? 0 : m - k;
+            final double er = (zr[a] + zr[b]) / 2;
+            final double ei = (zi[a] - zi[b]) / 2;
+            final double or = (zi[a] + zi[b]) / 2;
+            final double oi = (zr[b] - zr[a]) / 2;
+            re[k] = er + cos[k] * or - sin[k] * oi;
+            im[k] = ei + cos[k] * oi + sin[k] * or;
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.example;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Resamples spectrogram columns to pixel columns of an image of any width
+// and height. A pixel column shows the average of the spectrogram columns it
+// covers, or the nearest one if there are fewer columns than pixels. Bins are
+// mapped to pixel rows by a BinMap on the chosen frequency axis. Slices of
+// several tracks are shown stacked, track 0 at the top.
+public class Renderer
+{
+    private final Colormap colormap;
+    private double[] sum = new double[0];
+    private double[] rows = new double[0];
+    private double low = 0;
+    private double high = 1;
+    private int tracks = 1;
+    private BinMap.Axis axis = BinMap.Axis.LINEAR;
+    private float sampleRate = 44100;
+    private double lowest = 0; // Band of the bins
+    private double highest = 1;
+    private BinMap[] maps = new BinMap[1]; // Per track, for the last height
+
+    public Renderer(Colormap colormap)
+    {
+        this.colormap = colormap;
+    }
+
+    // Only show the fraction [low, high) of the frequency range
+    public void setRange(double low, double high)
+    {
+        this.low = low;
+        this.high = high;
+    }
+
+    public void setTracks(int value)
+    {
+        tracks = value;
+        maps = new BinMap[value];
+    }
+
+    public void setAxis(BinMap.Axis value)
+    {
+        axis = value;
+    }
+
+    public BinMap.Axis getAxis()
+    {
+        return axis;
+    }
+
+    // Of the audio, which places the log & mel axes
+    public void setSampleRate(float value)
+    {
+        sampleRate = value;
+    }
+
+    // Frequencies of the first & last bin of the slices, fractions of the
+    // Nyquist frequency, i.e. their plan's band
+    public void setBand(double lowest, double highest)
+    {
+        this.lowest = lowest;
+        this.highest = highest;
+    }
+
+    // Fill a pixel column from a single slice
+    public void column(double[] slice, int[] pixels, int height)
+    {
+        final int bins = slice.length / tracks;
+        if (rows.length < height)
+        {
+            rows = new double[height];
+        }
+        for (int t = 0; t < tracks; t++)
+        {
+            final int y = t * height / tracks;
+            final int end = (t + 1) * height / tracks;
+            if (end == y)
+            {
+                continue;
+            }
+            BinMap map = maps[t];
+            if (map == null || !map.matches(axis, bins, end - y, sampleRate, low, high, lowest, highest))
+            {
+                map = maps[t] = BinMap.of(axis, bins, end - y, sampleRate, low, high, lowest, highest);
+            }
+            map.apply(slice, t * bins, rows, 0);
+            colormap.rows(rows, pixels, y, end - y);
+        }
+    }
+
+    // First pixel column affected by spectrogram column from
+    public static int firstPixel(int from, int columns, int width)
+    {
+        return (int)((long)from * width / columns);
+    }
+
+    // End (exclusive) of the pixel columns affected by spectrogram columns before to
+    public static int endPixel(int to, int columns, int width)
+    {
+        return (int)Math.min(width, ((long)to * width + columns - 1) / columns);
+    }
+
+    // Fill pixel column x (top to bottom) from the available slices out of
+    // the given total, returns false if none of them are available yet
+    public boolean column(List<double[]> slices, int columns, int x, int width, int[] pixels, int height)
+    {
+        final int from = from(columns, x, width);
+        final int to = to(slices.size(), columns, x, width);
+        if (from >= to)
+        {
+            return false;
+        }
+        if (to - from == 1)
+        {
+            column(slices.get(from), pixels, height);
+            return true;
+        }
+
+        // Average the covered columns
+        final int bins = slices.get(from).length;
+        if (sum.length != bins)
+        {
+            sum = new double[bins];
+        }
+        Arrays.fill(sum, 0);
+        for (int i = from; i < to; i++)
+        {
+            double[] slice = slices.get(i);
+            for (int j = 0; j < bins; j++)
+            {
+                sum[j] += slice[j];
+            }
+        }
+        for (int j = 0; j < bins; j++)
+        {
+            sum[j] /= to - from;
+        }
+        column(sum, pixels, height);
+        return true;
+    }
+
+    // Same as above, decoding the slices of the store in place
+    public boolean column(SliceStore slices, int columns, int x, int width, int[] pixels, int height)
+    {
+        final int from = from(columns, x, width);
+        final int to = to(slices.size(), columns, x, width);
+        if (from >= to)
+        {
+            return false;
+        }
+
+        final int bins = slices.bins();
+        if (sum.length != bins)
+        {
+            sum = new double[bins];
+        }
+        if (to - from == 1)
+        {
+            slices.get(from, sum);
+            column(sum, pixels, height);
+            return true;
+        }
+
+        // Average the covered columns
+        Arrays.fill(sum, 0);
+        for (int i = from; i < to; i++)
+        {
+            slices.add(i, sum);
+        }
+        for (int j = 0; j < bins; j++)
+        {
+            sum[j] /= to - from;
+        }
+        column(sum, pixels, height);
+        return true;
+    }
+
+    // Spectrogram columns [from, to) shown in pixel column x, limited to the
+    // available ones
+    private static int from(int columns, int x, int width)
+    {
+        return (int)((long)x * columns / width);
+    }
+
+    private static int to(int available, int columns, int x, int width)
+    {
+        return Math.min(available, Math.max(from(columns, x, width) + 1, (int)((long)(x + 1) * columns / width)));
+    }
+}
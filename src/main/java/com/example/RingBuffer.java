@@ -0,0 +1,189 @@
+package com.example;
+
+import java.util.concurrent.locks.LockSupport;
+
+// Single-producer/single-consumer ring buffer of samples. The producer claims
+// a contiguous free region, writes straight into array() and publishes it;
+// the consumer waits for a contiguous readable region, reads it from array()
+// and releases it. Only the two volatile sequence counters are shared, and a
+// waiting side spins briefly before parking until the other side moves.
+public class RingBuffer
+{
+    private static final int SPINS = 256;
+    private static final long PARK_NANOS = 1_000_000; // Re-check if a wakeup is missed
+
+    private final double[] buffer;
+    private final int mask;
+
+    // Shared state
+    private volatile long head = 0; // Total samples published by producer
+    private volatile long tail = 0; // Total samples released by consumer
+    private volatile boolean closed = false;
+    private volatile Thread producer;
+    private volatile Thread consumer;
+
+    // Local copies of the other side's counter
+    private long cachedTail = 0; // Producer only
+    private long cachedHead = 0; // Consumer only
+
+    public RingBuffer(int capacity)
+    {
+        if (capacity < 1 || capacity > (1 << 30))
+        {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        // Round up to a power of two
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+        {
+            size <<= 1;
+        }
+        this.buffer = new double[size];
+        this.mask = size - 1;
+    }
+
+    public double[] array()
+    {
+        return buffer;
+    }
+
+    public int capacity()
+    {
+        return buffer.length;
+    }
+
+    // Number of samples published but not yet released
+    public int size()
+    {
+        long t = tail;
+        return (int)(head - t);
+    }
+
+    public boolean isClosed()
+    {
+        return closed;
+    }
+
+    // Either side may close the buffer, which wakes up the other side
+    public void close()
+    {
+        closed = true;
+        LockSupport.unpark(producer);
+        LockSupport.unpark(consumer);
+    }
+
+    // Producer: wait for free space, returns the number of contiguous free
+    // samples starting at writeOffset() or -1 if the buffer was closed
+    public int claim() throws InterruptedException
+    {
+        final long h = head;
+        int spins = 0;
+        while (h - cachedTail == buffer.length)
+        {
+            cachedTail = tail;
+            if (h - cachedTail < buffer.length)
+            {
+                break;
+            }
+            if (closed)
+            {
+                return -1;
+            }
+            if (spins++ < SPINS)
+            {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            // Publish intent to park, then re-check before parking
+            producer = Thread.currentThread();
+            if (h - tail == buffer.length && !closed)
+            {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+            producer = null;
+            if (Thread.interrupted())
+            {
+                throw new InterruptedException();
+            }
+        }
+        if (closed)
+        {
+            return -1;
+        }
+
+        final int offset = (int)(h & mask);
+        final int free = buffer.length - (int)(h - cachedTail);
+        return Math.min(free, buffer.length - offset);
+    }
+
+    public int writeOffset()
+    {
+        return (int)(head & mask);
+    }
+
+    // Producer: make count samples written at writeOffset() visible
+    public void publish(int count)
+    {
+        head = head + count;
+        LockSupport.unpark(consumer);
+    }
+
+    // Consumer: wait for data, returns the number of contiguous readable
+    // samples starting at readOffset() or -1 if the buffer is closed & empty
+    public int available() throws InterruptedException
+    {
+        final long t = tail;
+        int spins = 0;
+        while (cachedHead == t)
+        {
+            cachedHead = head;
+            if (cachedHead != t)
+            {
+                break;
+            }
+            if (closed)
+            {
+                // Producer may have published right before closing
+                cachedHead = head;
+                if (cachedHead == t)
+                {
+                    return -1;
+                }
+                break;
+            }
+            if (spins++ < SPINS)
+            {
+                Thread.onSpinWait();
+                continue;
+            }
+
+            // Publish intent to park, then re-check before parking
+            consumer = Thread.currentThread();
+            if (head == t && !closed)
+            {
+                LockSupport.parkNanos(this, PARK_NANOS);
+            }
+            consumer = null;
+            if (Thread.interrupted())
+            {
+                throw new InterruptedException();
+            }
+        }
+
+        final int offset = (int)(t & mask);
+        return (int)Math.min(cachedHead - t, buffer.length - offset);
+    }
+
+    public int readOffset()
+    {
+        return (int)(tail & mask);
+    }
+
+    // Consumer: hand count samples starting at readOffset() back to the producer
+    public void release(int count)
+    {
+        tail = tail + count;
+        LockSupport.unpark(producer);
+    }
+}
@@ -0,0 +1,173 @@
+package com.example;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Application-wide pool for the CPU work of all analyses, one thread per
+// core however many files are open. Work is submitted through jobs, e.g.
+// one per run; queued tasks are taken by the priority of their job, then in
+// the order they were submitted. Changing the priority of a job re-queues
+// its tasks, running tasks are not preempted, so work is split into tasks
+// short enough to yield to visible work quickly. Tasks must not wait for
+// each other: stages that do (readers, workers waiting on ring buffers,
+// runs waiting for their tasks) run on virtual threads instead.
+public class Scheduler
+{
+    public enum Priority
+    {
+        VISIBLE,    // Shown right now, e.g. the current file or viewport
+        BACKGROUND  // Prefetching, cache warming, files in other tabs
+    }
+
+    private static final Scheduler SHARED = new Scheduler(Runtime.getRuntime().availableProcessors());
+
+    private final ThreadPoolExecutor pool;
+    private final PriorityBlockingQueue<Runnable> queue = new PriorityBlockingQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public Scheduler(int threads)
+    {
+        final AtomicInteger count = new AtomicInteger();
+        pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue, r -> {
+            Thread t = new PoolThread(r, "jspect-analysis-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        // Tasks re-queued by setPriority() go straight to the queue
+        pool.prestartAllCoreThreads();
+    }
+
+    public static Scheduler shared()
+    {
+        return SHARED;
+    }
+
+    // Whether the current thread is one of a scheduler's, i.e. has a core to
+    // itself and shouldn't fan out further
+    public static boolean isPoolThread()
+    {
+        return Thread.currentThread() instanceof PoolThread;
+    }
+
+    public int getThreads()
+    {
+        return pool.getCorePoolSize();
+    }
+
+    // Tasks queued but not yet started, of all jobs
+    public int getBacklog()
+    {
+        return queue.size();
+    }
+
+    public Job job(Priority priority)
+    {
+        return new Job(priority);
+    }
+
+    private static class PoolThread extends Thread
+    {
+        PoolThread(Runnable r, String name)
+        {
+            super(r, name);
+        }
+    }
+
+    private record Task(Job job, Priority priority, long sequence, FutureTask<?> future) implements Runnable, Comparable<Task>
+    {
+        @Override
+        public void run()
+        {
+            future.run();
+        }
+
+        @Override
+        public int compareTo(Task other)
+        {
+            final int c = priority.compareTo(other.priority);
+            return c != 0 ? c : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    // A group of tasks sharing a priority
+    public final class Job
+    {
+        private volatile Priority priority;
+        private volatile boolean cancelled = false;
+
+        private Job(Priority priority)
+        {
+            this.priority = priority;
+        }
+
+        // The one whose threads run the tasks
+        public Scheduler getScheduler()
+        {
+            return Scheduler.this;
+        }
+
+        public Priority getPriority()
+        {
+            return priority;
+        }
+
+        // Move the tasks still queued to the new priority, keeping their order
+        public synchronized void setPriority(Priority value)
+        {
+            if (value == priority)
+            {
+                return;
+            }
+            priority = value;
+            for (Object o : queue.toArray())
+            {
+                final Task task = (Task)o;
+                if (task.job() == this && queue.remove(task))
+                {
+                    queue.add(new Task(this, value, task.sequence(), task.future()));
+                }
+            }
+        }
+
+        public synchronized <T> Future<T> submit(Callable<T> callable)
+        {
+            final FutureTask<T> future = new FutureTask<>(callable);
+            if (cancelled)
+            {
+                future.cancel(false);
+            }
+            else
+            {
+                pool.execute(new Task(this, priority, sequence.getAndIncrement(), future));
+            }
+            return future;
+        }
+
+        // Whether cancel() was called, for running tasks to stop early
+        public boolean isCancelled()
+        {
+            return cancelled;
+        }
+
+        // Drop the tasks still queued, and any submitted later; their futures
+        // are cancelled so whoever waits for them wakes up
+        public synchronized void cancel()
+        {
+            cancelled = true;
+            for (Object o : queue.toArray())
+            {
+                final Task task = (Task)o;
+                if (task.job() == this && queue.remove(task))
+                {
+                    task.future().cancel(false);
+                }
+            }
+        }
+    }
+}
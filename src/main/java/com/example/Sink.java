@@ -0,0 +1,18 @@
+package com.example;
+
+// Receives the slices produced by an analysis, in order
+public interface Sink
+{
+    // Returns false if the receiver no longer wants any slices
+    boolean publish(double[] slice) throws InterruptedException;
+
+    // Replace the slice at index, or append it if index is the number of
+    // slices so far
+    default boolean set(int index, double[] slice) throws InterruptedException
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    // All slices have been published
+    void finish();
+}
@@ -0,0 +1,102 @@
+package com.example;
+
+import java.util.AbstractList;
+import java.util.List;
+
+import javafx.collections.ModifiableObservableListBase;
+
+// Observable list of the slices in a SliceStore, for the UI. Slices can be
+// appended or replaced, but not removed: the list is emptied or refilled as
+// a whole by switching to another store. get() decodes a copy of the slice;
+// the renderer reads the store directly.
+public class SliceList extends ModifiableObservableListBase<double[]>
+{
+    private SliceStore store = null;
+
+    public SliceStore getStore()
+    {
+        return store;
+    }
+
+    // Show the slices of another store (null for none), as a single change
+    public void setStore(SliceStore value)
+    {
+        final List<double[]> removed = view(store);
+        store = value;
+        beginChange();
+        if (!removed.isEmpty())
+        {
+            nextRemove(0, removed);
+        }
+        if (size() > 0)
+        {
+            nextAdd(0, size());
+        }
+        endChange();
+    }
+
+    // The slices of a store that is no longer shown
+    private static List<double[]> view(SliceStore store)
+    {
+        final int size = store != null ? store.size() : 0;
+        return new AbstractList<double[]>() {
+            @Override
+            public double[] get(int index)
+            {
+                return store.get(index);
+            }
+
+            @Override
+            public int size()
+            {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public void clear()
+    {
+        setStore(null);
+    }
+
+    @Override
+    public double[] get(int index)
+    {
+        if (index < 0 || index >= size())
+        {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return store.get(index);
+    }
+
+    @Override
+    public int size()
+    {
+        return store != null ? store.size() : 0;
+    }
+
+    @Override
+    protected void doAdd(int index, double[] element)
+    {
+        if (store == null || index != size())
+        {
+            throw new UnsupportedOperationException("Slices can only be appended to a store");
+        }
+        store.put(index, element);
+    }
+
+    @Override
+    protected double[] doSet(int index, double[] element)
+    {
+        final double[] previous = get(index);
+        store.put(index, element);
+        return previous;
+    }
+
+    @Override
+    protected double[] doRemove(int index)
+    {
+        throw new UnsupportedOperationException("Slices can't be removed");
+    }
+}
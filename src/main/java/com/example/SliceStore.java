@@ -0,0 +1,143 @@
+package com.example;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Off-heap storage of the slices of one spectrogram. Slices are already
+// normalised to [0, 1] on a dB scale, so they are quantized linearly to 8
+// or 16 bits per bin, 8 or 4 times smaller than double[] slices and none of
+// it on the Java heap. Columns are stored in direct buffers of up to 1 GB,
+// each holding whole columns. Columns may be written in any order; size()
+// is one past the highest column written so far.
+public class SliceStore
+{
+    private static final int BLOCK_SIZE = 1 << 30;
+
+    private final int columns;
+    private final int bins;
+    private final int bits;
+    private final int columnBytes;
+    private final int columnsPerBlock;
+    private final ByteBuffer[] blocks;
+    private final double scale; // Largest code
+    private final double step; // Value of code 1
+    private int size = 0;
+
+    public SliceStore(int columns, int bins, int bits)
+    {
+        if (bits != 8 && bits != 16)
+        {
+            throw new IllegalArgumentException("Bits must be 8 or 16: " + bits);
+        }
+        this.columns = columns;
+        this.bins = bins;
+        this.bits = bits;
+        this.columnBytes = bins * bits / 8;
+        this.columnsPerBlock = Math.max(1, BLOCK_SIZE / columnBytes);
+        this.scale = (1 << bits) - 1;
+        this.step = 1 / scale;
+        this.blocks = new ByteBuffer[(columns + columnsPerBlock - 1) / columnsPerBlock];
+        for (int b = 0; b < blocks.length; b++)
+        {
+            final int count = Math.min(columnsPerBlock, columns - b * columnsPerBlock);
+            blocks[b] = ByteBuffer.allocateDirect(count * columnBytes);
+        }
+    }
+
+    // Capacity
+    public int columns()
+    {
+        return columns;
+    }
+
+    public int bins()
+    {
+        return bins;
+    }
+
+    public int bits()
+    {
+        return bits;
+    }
+
+    public synchronized int size()
+    {
+        return size;
+    }
+
+    // Off-heap bytes
+    public long bytes()
+    {
+        return (long)columns * columnBytes;
+    }
+
+    public void put(int column, double[] slice)
+    {
+        if (slice.length != bins)
+        {
+            throw new IllegalArgumentException("Expected " + bins + " bins, got " + slice.length);
+        }
+        final ByteBuffer block = blocks[column / columnsPerBlock];
+        final int offset = (column % columnsPerBlock) * columnBytes;
+        for (int i = 0; i < bins; i++)
+        {
+            // NaN maps to 0 through the cast
+            final int code = (int)Math.clamp((long)(slice[i] * scale + 0.5), 0, (long)scale);
+            if (bits == 8)
+            {
+                block.put(offset + i, (byte)code);
+            }
+            else
+            {
+                block.putShort(offset + 2 * i, (short)code);
+            }
+        }
+        synchronized (this)
+        {
+            size = Math.max(size, column + 1);
+        }
+    }
+
+    public double[] get(int column)
+    {
+        double[] slice = new double[bins];
+        get(column, slice);
+        return slice;
+    }
+
+    // Decode a column into slice[0, bins)
+    public void get(int column, double[] slice)
+    {
+        Arrays.fill(slice, 0, bins, 0);
+        add(column, slice);
+    }
+
+    // Add a column to sum[0, bins), for averaging without decoding each one
+    public void add(int column, double[] sum)
+    {
+        final ByteBuffer block = blocks[column / columnsPerBlock];
+        final int offset = (column % columnsPerBlock) * columnBytes;
+        if (bits == 8)
+        {
+            for (int i = 0; i < bins; i++)
+            {
+                sum[i] += (block.get(offset + i) & 0xFF) * step;
+            }
+        }
+        else
+        {
+            for (int i = 0; i < bins; i++)
+            {
+                sum[i] += (block.getShort(offset + 2 * i) & 0xFFFF) * step;
+            }
+        }
+    }
+
+    // Read-only view of the codes of a column: bins bytes (8 bit) or
+    // big-endian shorts (16 bit)
+    public ByteBuffer column(int column)
+    {
+        final ByteBuffer block = blocks[column / columnsPerBlock];
+        return block.slice((column % columnsPerBlock) * columnBytes, columnBytes).asReadOnlyBuffer();
+    }
+}
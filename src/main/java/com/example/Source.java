@@ -0,0 +1,65 @@
+package com.example;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+// Seekable stream of decoded sample frames
+public interface Source extends Closeable
+{
+    AudioFormat getFormat();
+
+    long getFrameLength();
+
+    // Position the source so the next read starts at the given frame
+    void seek(long frame) throws IOException;
+
+    // Read up to length frames of one channel, returns the number of frames
+    // read or -1 at the end of the stream
+    int read(double[] buffer, int offset, int length, int channel) throws IOException;
+
+    // Read up to length frames of the first buffers.length channels in one
+    // pass, buffers[c] receiving channel c, returns the number of frames read
+    // or -1 at the end of the stream
+    int read(double[][] buffers, int offset, int length) throws IOException;
+
+    // Run decoding that's worth spreading over the cores as tasks of the job,
+    // e.g. when reading a whole file on its own thread. Sources that decode
+    // little ignore it.
+    default void setJob(Scheduler.Job job)
+    {
+    }
+
+    // Prefer mapping the file directly, fall back to javax.sound.sampled for
+    // formats the mapped reader can't handle. FLAC is decoded here.
+    static Source open(File file) throws IOException, UnsupportedAudioFileException
+    {
+        Source source = MappedSource.open(file);
+        if (source != null)
+        {
+            return source;
+        }
+        source = FlacSource.open(file);
+        if (source != null)
+        {
+            return source;
+        }
+        return new StreamSource(file);
+    }
+
+    // Like AudioSystem.getAudioFileFormat(), including the formats decoded here
+    static AudioFileFormat getFileFormat(File file) throws IOException, UnsupportedAudioFileException
+    {
+        AudioFileFormat fileFormat = FlacSource.getFileFormat(file);
+        if (fileFormat != null)
+        {
+            return fileFormat;
+        }
+        return AudioSystem.getAudioFileFormat(file);
+    }
+}
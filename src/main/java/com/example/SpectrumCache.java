@@ -0,0 +1,63 @@
+package com.example;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// In-memory LRU cache of finished spectrograms, bounded by their total
+// (off-heap) size. Stores are kept as they are: they are no longer written
+// once finished.
+public class SpectrumCache
+{
+    public record Key(String path, long length, long lastModified, Plan plan, int columns, ChannelMode mode)
+    {
+        public static Key of(File file, Plan plan, int columns, ChannelMode mode)
+        {
+            return new Key(file.getAbsolutePath(), file.length(), file.lastModified(), plan, columns, mode);
+        }
+    }
+
+    private final long capacity;
+    private long size = 0;
+    private final LinkedHashMap<Key, SliceStore> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    public SpectrumCache(long capacity)
+    {
+        this.capacity = capacity;
+    }
+
+    public synchronized SliceStore get(Key key)
+    {
+        return entries.get(key);
+    }
+
+    public synchronized void put(Key key, SliceStore slices)
+    {
+        final long bytes = slices.bytes();
+        if (bytes > capacity)
+        {
+            return;
+        }
+
+        SliceStore previous = entries.put(key, slices);
+        if (previous != null)
+        {
+            size -= previous.bytes();
+        }
+        size += bytes;
+
+        // Evict least recently used
+        Iterator<Map.Entry<Key, SliceStore>> it = entries.entrySet().iterator();
+        while (size > capacity && it.hasNext())
+        {
+            Map.Entry<Key, SliceStore> entry = it.next();
+            if (entry.getKey().equals(key))
+            {
+                continue;
+            }
+            size -= entry.getValue().bytes();
+            it.remove();
+        }
+    }
+}
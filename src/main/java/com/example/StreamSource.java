@@ -0,0 +1,130 @@
+package com.example;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+// Source backed by javax.sound.sampled, seeking forward by skipping bytes
+// and backward by re-opening the file
+public class StreamSource implements Source
+{
+    private final File file;
+    private final AudioFormat format;
+    private final Decoder decoder;
+    private final long frameLength;
+    private AudioInputStream in;
+    private byte[] bytes = new byte[0];
+    private long position = 0;
+
+    public StreamSource(File file) throws IOException, UnsupportedAudioFileException
+    {
+        this.file = file;
+        this.in = AudioSystem.getAudioInputStream(file);
+        this.format = in.getFormat();
+        this.frameLength = in.getFrameLength();
+        if (!Decoder.isSupported(format))
+        {
+            in.close();
+            throw new UnsupportedAudioFileException("Unsupported encoding: " + format);
+        }
+        this.decoder = new Decoder(format);
+    }
+
+    @Override
+    public AudioFormat getFormat()
+    {
+        return format;
+    }
+
+    @Override
+    public long getFrameLength()
+    {
+        return frameLength;
+    }
+
+    @Override
+    public void seek(long frame) throws IOException
+    {
+        if (frame < position)
+        {
+            try
+            {
+                in.close();
+                in = AudioSystem.getAudioInputStream(file);
+                position = 0;
+            }
+            catch (UnsupportedAudioFileException e)
+            {
+                throw new IOException(e);
+            }
+        }
+
+        long remaining = (frame - position) * decoder.getFrameSize();
+        while (remaining > 0)
+        {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0)
+            {
+                break; // End of stream
+            }
+            remaining -= skipped;
+        }
+        position = frame;
+    }
+
+    @Override
+    public int read(double[] buffer, int offset, int length, int channel) throws IOException
+    {
+        final int frames = fill(length);
+        for (int i = 0; i < frames; i++)
+        {
+            buffer[offset + i] = decoder.decode(bytes, i, channel);
+        }
+        return frames;
+    }
+
+    @Override
+    public int read(double[][] buffers, int offset, int length) throws IOException
+    {
+        final int frames = fill(length);
+        for (int channel = 0; channel < buffers.length; channel++)
+        {
+            final double[] buffer = buffers[channel];
+            for (int i = 0; i < frames; i++)
+            {
+                buffer[offset + i] = decoder.decode(bytes, i, channel);
+            }
+        }
+        return frames;
+    }
+
+    // Read up to length frames into bytes, returns the number of frames or -1
+    private int fill(int length) throws IOException
+    {
+        final int frameSize = decoder.getFrameSize();
+        if (bytes.length < length * frameSize)
+        {
+            bytes = new byte[length * frameSize];
+        }
+
+        int numBytesRead = in.read(bytes, 0, length * frameSize);
+        if (numBytesRead == -1)
+        {
+            return -1;
+        }
+
+        final int frames = numBytesRead / frameSize;
+        position += frames;
+        return frames;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        in.close();
+    }
+}
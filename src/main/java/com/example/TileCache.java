@@ -0,0 +1,165 @@
+package com.example;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+import javafx.application.Platform;
+
+// Spectrogram tiles for zoomed-in views. At level L a column covers 2^L
+// frames and a tile covers TILE_COLUMNS columns, so a tile only needs its own
+// frames (plus one FFT of overlap) to be decoded. Tiles are computed on the
+// scheduler on demand and kept in a bounded LRU cache. Tiles the view may
+// need next can be prefetched in the background, after all visible work.
+// Work for a file no longer shown is cancelled, tiles already computed stay.
+public class TileCache
+{
+    public static final int TILE_COLUMNS = 256;
+
+    public record Key(String path, long length, long lastModified, Plan plan, ChannelMode mode, int level, long index) {}
+
+    private final int capacity;
+    private final LinkedHashMap<Key, List<double[]>> tiles = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, List<double[]>> eldest)
+        {
+            return size() > capacity;
+        }
+    };
+    private final Map<Key, Runnable> pending = new HashMap<>(); // FX thread: to run once loaded, if any
+    private final Map<Key, Future<?>> prefetching = new HashMap<>(); // FX thread
+    private volatile Set<Key> visible = Set.of();
+    private Scheduler.Job job = Scheduler.shared().job(Scheduler.Priority.VISIBLE); // FX thread
+    private Scheduler.Job prefetch = Scheduler.shared().job(Scheduler.Priority.BACKGROUND); // FX thread
+
+    public TileCache(int capacity)
+    {
+        this.capacity = capacity;
+    }
+
+    // Smallest level at which the given number of frames fits into width columns
+    public static int level(long frames, int width)
+    {
+        long framesPerColumn = Math.max(1, frames / Math.max(1, width));
+        return 64 - Long.numberOfLeadingZeros(framesPerColumn - 1);
+    }
+
+    public static Key key(File file, Plan plan, ChannelMode mode, int level, long index)
+    {
+        return new Key(file.getAbsolutePath(), file.length(), file.lastModified(), plan, mode, level, index);
+    }
+
+    // FX thread: tiles not in this set are skipped if they haven't started yet
+    public void setVisible(Set<Key> keys)
+    {
+        visible = keys;
+    }
+
+    // FX thread: visible tiles yield to other work while hidden, e.g. in
+    // another tab
+    public void setPriority(Scheduler.Priority value)
+    {
+        job.setPriority(value);
+    }
+
+    // FX thread: drop the tiles queued or being computed, e.g. when another
+    // file is loaded. Their onLoaded callbacks won't run.
+    public void cancel()
+    {
+        job.cancel();
+        prefetch.cancel();
+        job = Scheduler.shared().job(job.getPriority());
+        prefetch = Scheduler.shared().job(Scheduler.Priority.BACKGROUND);
+        pending.clear();
+        prefetching.clear();
+    }
+
+    // FX thread: returns the tile, or null after scheduling it to be computed,
+    // in which case onLoaded runs on the FX thread once it is available
+    public List<double[]> get(Key key, long numFrames, Runnable onLoaded)
+    {
+        List<double[]> tile = tiles.get(key);
+        if (tile != null)
+        {
+            return tile;
+        }
+
+        // Prefetched tiles that haven't started yet are moved up
+        final Future<?> future = prefetching.remove(key);
+        if (future != null && future.cancel(false))
+        {
+            pending.remove(key);
+        }
+        if (!pending.containsKey(key))
+        {
+            load(job, key, numFrames);
+        }
+        pending.put(key, onLoaded);
+        return null;
+    }
+
+    // FX thread: compute a tile in the background unless it's already there
+    public void prefetch(Key key, long numFrames)
+    {
+        if (!tiles.containsKey(key) && !pending.containsKey(key))
+        {
+            pending.put(key, null);
+            prefetching.put(key, load(prefetch, key, numFrames));
+        }
+    }
+
+    private Future<?> load(Scheduler.Job target, Key key, long numFrames)
+    {
+        final boolean prefetched = target == prefetch;
+        return target.submit(() -> {
+            List<double[]> result = null;
+            try
+            {
+                // Skip tiles scrolled out of view before we got to them
+                if (prefetched || visible.contains(key))
+                {
+                    result = analyse(key, numFrames, () -> !target.isCancelled());
+                }
+            }
+            catch (Exception e)
+            {
+                e.printStackTrace();
+            }
+
+            final List<double[]> loaded = result;
+            Platform.runLater(() -> {
+                if (target.isCancelled())
+                {
+                    return; // Cut short, and no longer pending
+                }
+                prefetching.remove(key);
+                final Runnable onLoaded = pending.remove(key);
+                if (loaded != null)
+                {
+                    tiles.put(key, loaded);
+                    if (onLoaded != null)
+                    {
+                        onLoaded.run();
+                    }
+                }
+            });
+            return null;
+        });
+    }
+
+    private static List<double[]> analyse(Key key, long numFrames, BooleanSupplier isRunning) throws Exception
+    {
+        final int samplesPerSlice = 1 << key.level();
+        final long begin = Math.min(key.index() * TILE_COLUMNS * samplesPerSlice, numFrames);
+        final long end = Math.min(begin + (long)TILE_COLUMNS * samplesPerSlice, numFrames);
+        try (Source source = Source.open(new File(key.path())))
+        {
+            return Analyser.analyse(source, key.plan(), samplesPerSlice, begin, end, key.mode(), isRunning, null);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example;
+
+// Spectrum of a fixed number of real samples as a fixed number of complex
+// bins, lowest frequency first. Instances have scratch buffers of their own,
+// so transform() may only be called on one thread; copy() shares the tables
+// with an instance for another thread.
+public interface Transform
+{
+    // Number of input samples
+    int size();
+
+    int bins();
+
+    // Transforms in[0, size) into re/im[0, bins) without modifying the input
+    void transform(double[] in, double[] re, double[] im);
+
+    Transform copy();
+}
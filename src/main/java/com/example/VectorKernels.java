@@ -0,0 +1,168 @@
+package com.example;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// SIMD versions of the Kernels, only loaded if jdk.incubator.vector is
+// present. Each loop handles whole vectors first and the remainder with
+// scalar code.
+final class VectorKernels
+{
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private VectorKernels() {}
+
+    static void window(double[] history, int position, double[] window, double[] input)
+    {
+        // The history is circular: [position, n) followed by [0, position)
+        final int n = window.length;
+        multiply(history, position, window, 0, input, 0, n - position);
+        multiply(history, 0, window, n - position, input, n - position, position);
+    }
+
+    private static void multiply(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length)
+    {
+        int i = 0;
+        for (; i < SPECIES.loopBound(length); i += SPECIES.length())
+        {
+            DoubleVector.fromArray(SPECIES, a, aOffset + i)
+                .mul(DoubleVector.fromArray(SPECIES, b, bOffset + i))
+                .intoArray(out, outOffset + i);
+        }
+        for (; i < length; i++)
+        {
+            out[outOffset + i] = a[aOffset + i] * b[bOffset + i];
+        }
+    }
+
+    static void add(double[] sum, double[] values, int n)
+    {
+        int i = 0;
+        for (; i < SPECIES.loopBound(n); i += SPECIES.length())
+        {
+            DoubleVector.fromArray(SPECIES, sum, i)
+                .add(DoubleVector.fromArray(SPECIES, values, i))
+                .intoArray(sum, i);
+        }
+        for (; i < n; i++)
+        {
+            sum[i] += values[i];
+        }
+    }
+
+    static void addPower(double[] sum, double[] re, double[] im, int n)
+    {
+        int i = 0;
+        for (; i < SPECIES.loopBound(n); i += SPECIES.length())
+        {
+            power(re, im, i).add(DoubleVector.fromArray(SPECIES, sum, i)).intoArray(sum, i);
+        }
+        for (; i < n; i++)
+        {
+            sum[i] += re[i] * re[i] + im[i] * im[i];
+        }
+    }
+
+    static void maxPower(double[] max, double[] re, double[] im, int n)
+    {
+        int i = 0;
+        for (; i < SPECIES.loopBound(n); i += SPECIES.length())
+        {
+            power(re, im, i).max(DoubleVector.fromArray(SPECIES, max, i)).intoArray(max, i);
+        }
+        for (; i < n; i++)
+        {
+            max[i] = Math.max(max[i], re[i] * re[i] + im[i] * im[i]);
+        }
+    }
+
+    private static DoubleVector power(double[] re, double[] im, int i)
+    {
+        DoubleVector r = DoubleVector.fromArray(SPECIES, re, i);
+        DoubleVector m = DoubleVector.fromArray(SPECIES, im, i);
+        return r.mul(r).add(m.mul(m));
+    }
+
+    static void normalise(double[] sumRe, double[] sumIm, int count, int n, double[] slice)
+    {
+        final int bins = slice.length;
+        final int bound = SPECIES.loopBound(bins);
+        final double offset = 10 * Math.log((double)count * n);
+
+        // dB from power, tracking min & max per lane
+        DoubleVector mins = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+        DoubleVector maxs = DoubleVector.broadcast(SPECIES, Double.NEGATIVE_INFINITY);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length())
+        {
+            DoubleVector d = power(sumRe, sumIm, i)
+                .lanewise(VectorOperators.LOG)
+                .mul(5)
+                .sub(offset);
+            d.intoArray(slice, i);
+            mins = mins.min(d);
+            maxs = maxs.max(d);
+        }
+        double min = mins.reduceLanes(VectorOperators.MIN);
+        double max = maxs.reduceLanes(VectorOperators.MAX);
+        for (; i < bins; i++)
+        {
+            final double re = sumRe[i];
+            final double im = sumIm[i];
+            final double d = 5 * Math.log(re * re + im * im) - offset;
+            slice[i] = d;
+            min = Math.min(d, min);
+            max = Math.max(d, max);
+        }
+
+        scale(slice, min, max);
+    }
+
+    static void normalisePower(double[] power, int count, int n, double[] slice)
+    {
+        final int bins = slice.length;
+        final int bound = SPECIES.loopBound(bins);
+        final double offset = 5 * Math.log(count) + 10 * Math.log(n);
+
+        DoubleVector mins = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+        DoubleVector maxs = DoubleVector.broadcast(SPECIES, Double.NEGATIVE_INFINITY);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length())
+        {
+            DoubleVector d = DoubleVector.fromArray(SPECIES, power, i)
+                .lanewise(VectorOperators.LOG)
+                .mul(5)
+                .sub(offset);
+            d.intoArray(slice, i);
+            mins = mins.min(d);
+            maxs = maxs.max(d);
+        }
+        double min = mins.reduceLanes(VectorOperators.MIN);
+        double max = maxs.reduceLanes(VectorOperators.MAX);
+        for (; i < bins; i++)
+        {
+            final double d = 5 * Math.log(power[i]) - offset;
+            slice[i] = d;
+            min = Math.min(d, min);
+            max = Math.max(d, max);
+        }
+        scale(slice, min, max);
+    }
+
+    // Normalise to [0, 1]
+    private static void scale(double[] slice, double min, double max)
+    {
+        final int bins = slice.length;
+        final double range = max - min;
+        int i = 0;
+        for (; i < SPECIES.loopBound(bins); i += SPECIES.length())
+        {
+            DoubleVector.fromArray(SPECIES, slice, i).sub(min).div(range).intoArray(slice, i);
+        }
+        for (; i < bins; i++)
+        {
+            slice[i] = (slice[i] - min) / range;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example;
+
+// Visible part of a spectrogram: a range of frames [start, end) in time and
+// a fraction [low, high) of the frequency range
+public class Viewport
+{
+    private static final double MIN_FRAMES = 64;
+    private static final double MIN_FREQUENCY = 1.0 / 256;
+
+    private double length = 1;
+    private double start = 0;
+    private double end = 1;
+    private double low = 0;
+    private double high = 1;
+
+    public void reset(long frames)
+    {
+        length = Math.max(1, frames);
+        start = 0;
+        end = length;
+        low = 0;
+        high = 1;
+    }
+
+    public double getStart()
+    {
+        return start;
+    }
+
+    public double getEnd()
+    {
+        return end;
+    }
+
+    public double getLow()
+    {
+        return low;
+    }
+
+    public double getHigh()
+    {
+        return high;
+    }
+
+    // Whether only part of the file is visible
+    public boolean isZoomed()
+    {
+        return start > 0 || end < length;
+    }
+
+    // Scale the visible time range by factor around anchor (fraction of width)
+    public void zoom(double factor, double anchor)
+    {
+        final double span = end - start;
+        final double target = Math.clamp(span * factor, Math.min(MIN_FRAMES, length), length);
+        final double center = start + anchor * span;
+        start = center - anchor * target;
+        end = start + target;
+        clamp();
+    }
+
+    // Move the visible time range by a fraction of its width
+    public void pan(double fraction)
+    {
+        final double offset = fraction * (end - start);
+        start += offset;
+        end += offset;
+        clamp();
+    }
+
+    // Scale the visible frequency range by factor around anchor (fraction of height)
+    public void zoomFrequency(double factor, double anchor)
+    {
+        final double span = high - low;
+        final double target = Math.clamp(span * factor, MIN_FREQUENCY, 1);
+        final double center = low + anchor * span;
+        low = Math.clamp(center - anchor * target, 0, 1 - target);
+        high = low + target;
+    }
+
+    private void clamp()
+    {
+        final double span = end - start;
+        start = Math.clamp(start, 0, length - span);
+        end = start + span;
+    }
+}
@@ -2,6 +2,8 @@ module com.example {
     requires javafx.controls;
     requires javafx.fxml;
     requires java.desktop;
+    requires jdk.jfr;
+    requires static jdk.incubator.vector; // Optional, see Kernels
 
     opens com.example to javafx.fxml;
     exports com.example;
@@ -0,0 +1,271 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import javax.sound.sampled.AudioFormat;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+// Decoding & seeking against the fixtures in src/test/resources/flac, made by
+// generate.py there: each holds the MD5 of its source PCM in STREAMINFO
+public class FlacSourceTest
+{
+    @ParameterizedTest
+    @CsvSource({
+        "independent, 2, 44100, 16, 25000",
+        "left-side, 2, 44100, 16, 25000",
+        "right-side, 2, 48000, 16, 20000",
+        "mid-side, 2, 44100, 16, 25000",
+        "escape-wasted, 1, 96000, 24, 20000",
+        "mono8, 1, 8000, 8, 8000",
+        "three12, 3, 22050, 12, 6000"
+    })
+    public void readsStreamInfo(String name, int channels, float sampleRate, int bits, long frames) throws Exception
+    {
+        try (Source source = Source.open(fixture(name)))
+        {
+            assertInstanceOf(FlacSource.class, source);
+            final AudioFormat format = source.getFormat();
+            assertEquals(channels, format.getChannels());
+            assertEquals(sampleRate, format.getSampleRate());
+            assertEquals(bits, format.getSampleSizeInBits());
+            assertEquals(frames, source.getFrameLength());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "independent", "left-side", "right-side", "mid-side", "escape-wasted", "mono8", "three12"
+    })
+    public void decodesSourcePcm(String name) throws Exception
+    {
+        final File file = fixture(name);
+        try (FlacSource source = FlacSource.open(file))
+        {
+            final int[][] samples = decode(source, new SplittableRandom(name.hashCode()));
+            assertEquals(source.getFrameLength(), samples[0].length);
+            assertArrayEquals(streamInfoMD5(file), md5(samples, source.getFormat().getSampleSizeInBits()));
+            assertEquals(-1, source.read(new double[source.getFormat().getChannels()][16], 0, 16));
+        }
+    }
+
+    // Batches split into tasks on the scheduler, as when a reader streams a file
+    @ParameterizedTest
+    @ValueSource(strings = { "independent", "right-side", "escape-wasted", "three12" })
+    public void decodesOnJob(String name) throws Exception
+    {
+        final File file = fixture(name);
+        final Scheduler scheduler = new Scheduler(3);
+        try (FlacSource source = FlacSource.open(file))
+        {
+            source.setJob(scheduler.job(Scheduler.Priority.BACKGROUND));
+            final int[][] samples = decode(source, new SplittableRandom(name.hashCode()));
+            assertArrayEquals(streamInfoMD5(file), md5(samples, source.getFormat().getSampleSizeInBits()));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "independent", "mid-side", "three12" })
+    public void readsSingleChannels(String name) throws Exception
+    {
+        final int[][] expected;
+        try (FlacSource source = FlacSource.open(fixture(name)))
+        {
+            expected = decode(source, new SplittableRandom(1));
+        }
+        for (int channel = 0; channel < expected.length; channel++)
+        {
+            try (FlacSource source = FlacSource.open(fixture(name)))
+            {
+                final double[] buffer = new double[expected[channel].length];
+                int length = 0;
+                int count;
+                while ((count = source.read(buffer, length, Math.min(1000, buffer.length - length), channel)) > 0)
+                {
+                    length += count;
+                }
+                assertEquals(buffer.length, length);
+                for (int i = 0; i < length; i++)
+                {
+                    assertEquals(expected[channel][i], buffer[i]);
+                }
+            }
+        }
+    }
+
+    // Forwards, backwards, within & across batches, to the very start & end:
+    // with a SEEKTABLE (independent, right-side) and without, by bisection
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "independent", "left-side", "right-side", "mid-side", "escape-wasted", "mono8", "three12"
+    })
+    public void seeksToAnySample(String name) throws Exception
+    {
+        final SplittableRandom random = new SplittableRandom(name.hashCode());
+        try (FlacSource source = FlacSource.open(fixture(name)))
+        {
+            final int[][] expected = decode(source, random);
+            final int channels = expected.length;
+            final int frames = expected[0].length;
+            final double[][] buffers = new double[channels][5000];
+            for (int i = 0; i < 300; i++)
+            {
+                final int position = switch (i % 10)
+                {
+                    case 0 -> 0;
+                    case 1 -> frames - 1 - random.nextInt(Math.min(frames, 100));
+                    default -> random.nextInt(frames);
+                };
+                source.seek(position);
+                final int length = Math.min(1 + random.nextInt(buffers[0].length), frames - position);
+                int done = 0;
+                while (done < length)
+                {
+                    final int count = source.read(buffers, done, length - done);
+                    assertTrue(count > 0, "Read " + count + " at " + (position + done));
+                    done += count;
+                }
+                for (int c = 0; c < channels; c++)
+                {
+                    for (int j = 0; j < length; j++)
+                    {
+                        assertEquals(expected[c][position + j], buffers[c][j], "Channel " + c + " at " + (position + j));
+                    }
+                }
+            }
+
+            // Past the end
+            source.seek(frames);
+            assertEquals(-1, source.read(buffers, 0, 1));
+            source.seek(frames + 1000L);
+            assertEquals(-1, source.read(buffers, 0, 1));
+        }
+    }
+
+    // Back before the frame found by the first seek, without reading there
+    @ParameterizedTest
+    @ValueSource(strings = { "independent", "left-side", "right-side", "mid-side", "escape-wasted" })
+    public void seeksBackBeforeReading(String name) throws Exception
+    {
+        try (FlacSource source = FlacSource.open(fixture(name)))
+        {
+            final int[][] expected = decode(source, new SplittableRandom(1));
+            final int frames = expected[0].length;
+            final double[][] buffers = new double[expected.length][100];
+            for (int near : new int[] { 0, frames / 4, frames * 3 / 4 - 1 })
+            {
+                source.seek(frames * 3 / 4);
+                source.seek(near);
+                for (int done = 0, count; done < 100; done += count)
+                {
+                    count = source.read(buffers, done, 100 - done);
+                    assertTrue(count > 0, "Read " + count + " at " + (near + done));
+                }
+                for (int c = 0; c < expected.length; c++)
+                {
+                    for (int j = 0; j < 100; j++)
+                    {
+                        assertEquals(expected[c][near + j], buffers[c][j], "Channel " + c + " at " + (near + j));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rejectsCorruptFrames(@TempDir Path directory) throws Exception
+    {
+        // Flip bits in the middle of the audio, covered by a frame CRC
+        final byte[] bytes = Files.readAllBytes(fixture("independent").toPath());
+        bytes[bytes.length * 2 / 3] ^= 0x24;
+        final Path corrupt = directory.resolve("corrupt.flac");
+        Files.write(corrupt, bytes);
+        try (FlacSource source = FlacSource.open(corrupt.toFile()))
+        {
+            assertThrows(IOException.class, () -> decode(source, new SplittableRandom(1)));
+        }
+    }
+
+    private static File fixture(String name)
+    {
+        return new File("src/test/resources/flac/" + name + ".flac");
+    }
+
+    // The whole stream, read in chunks of random size
+    private static int[][] decode(FlacSource source, SplittableRandom random) throws IOException
+    {
+        final int channels = source.getFormat().getChannels();
+        final int frames = (int)source.getFrameLength();
+        final int[][] samples = new int[channels][frames];
+        final double[][] buffers = new double[channels][4096];
+        int position = 0;
+        while (true)
+        {
+            final int count = source.read(buffers, 0, 1 + random.nextInt(buffers[0].length));
+            if (count < 0)
+            {
+                break;
+            }
+            for (int c = 0; c < channels; c++)
+            {
+                for (int i = 0; i < count; i++)
+                {
+                    samples[c][position + i] = (int)buffers[c][i];
+                }
+            }
+            position += count;
+        }
+        assertEquals(frames, position);
+        return samples;
+    }
+
+    // Signed little endian, whole bytes per sample, interleaved (RFC 9639)
+    private static byte[] md5(int[][] samples, int bits) throws Exception
+    {
+        final int width = (bits + 7) / 8;
+        final MessageDigest digest = MessageDigest.getInstance("MD5");
+        final byte[] frame = new byte[samples.length * width];
+        for (int i = 0; i < samples[0].length; i++)
+        {
+            for (int c = 0; c < samples.length; c++)
+            {
+                for (int b = 0; b < width; b++)
+                {
+                    frame[c * width + b] = (byte)(samples[c][i] >> (8 * b));
+                }
+            }
+            digest.update(frame);
+        }
+        return digest.digest();
+    }
+
+    // The last 16 bytes of the STREAMINFO block, the first after "fLaC"
+    private static byte[] streamInfoMD5(File file) throws IOException
+    {
+        final byte[] bytes = Files.readAllBytes(file.toPath());
+        for (int i = 0; i + 4 <= bytes.length; i++)
+        {
+            if (bytes[i] == 'f' && bytes[i + 1] == 'L' && bytes[i + 2] == 'a' && bytes[i + 3] == 'C')
+            {
+                return Arrays.copyOfRange(bytes, i + 8 + 18, i + 8 + 34);
+            }
+        }
+        throw new IOException("No fLaC marker in " + file);
+    }
+}
@@ -0,0 +1,188 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.Test;
+
+// Stress test of the handoff protocol: one producer and one consumer thread
+// through many wrap-arounds, and close() waking up a parked side
+public class RingBufferTest
+{
+    private static final long TIMEOUT_MILLIS = 10_000;
+
+    @Test
+    public void sequenceArrivesIntactAndInOrder() throws Exception
+    {
+        final RingBuffer ring = new RingBuffer(64);
+        final long total = 4_000_000; // 62500 wrap-arounds
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        // Random claim & release sizes, so the regions end anywhere in the buffer
+        final Thread producer = new Thread(() -> {
+            final SplittableRandom random = new SplittableRandom(1);
+            final double[] buffer = ring.array();
+            long next = 0;
+            try
+            {
+                while (next < total)
+                {
+                    final int free = ring.claim();
+                    assertTrue(free > 0);
+                    final int count = (int)Math.min(1 + random.nextInt(free), total - next);
+                    final int offset = ring.writeOffset();
+                    for (int i = 0; i < count; i++)
+                    {
+                        buffer[offset + i] = next++;
+                    }
+                    ring.publish(count);
+                }
+            }
+            catch (Throwable e)
+            {
+                failure.compareAndSet(null, e);
+            }
+            finally
+            {
+                ring.close();
+            }
+        });
+        final long[] received = new long[1];
+        final Thread consumer = new Thread(() -> {
+            final SplittableRandom random = new SplittableRandom(2);
+            final double[] buffer = ring.array();
+            try
+            {
+                int available;
+                while ((available = ring.available()) != -1)
+                {
+                    assertTrue(available > 0);
+                    final int count = 1 + random.nextInt(available);
+                    final int offset = ring.readOffset();
+                    for (int i = 0; i < count; i++)
+                    {
+                        assertEquals((double)received[0]++, buffer[offset + i]);
+                    }
+                    ring.release(count);
+                }
+            }
+            catch (Throwable e)
+            {
+                failure.compareAndSet(null, e);
+                ring.close();
+            }
+        });
+        producer.start();
+        consumer.start();
+        producer.join(TIMEOUT_MILLIS);
+        consumer.join(TIMEOUT_MILLIS);
+        assertFalse(producer.isAlive() || consumer.isAlive(), "Threads didn't finish");
+        assertNull(failure.get());
+        assertEquals(total, received[0]);
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void samplesPublishedBeforeCloseAreStillRead() throws Exception
+    {
+        final RingBuffer ring = new RingBuffer(8);
+        assertEquals(8, ring.claim());
+        ring.array()[0] = 1;
+        ring.array()[1] = 2;
+        ring.publish(2);
+        ring.close();
+        assertEquals(2, ring.available());
+        ring.release(2);
+        assertEquals(-1, ring.available());
+        assertEquals(-1, ring.claim());
+    }
+
+    @Test
+    public void closeWakesParkedReader() throws Exception
+    {
+        final RingBuffer ring = new RingBuffer(16);
+        final AtomicInteger result = new AtomicInteger(0);
+        final Thread consumer = new Thread(() -> {
+            try
+            {
+                result.set(ring.available());
+            }
+            catch (InterruptedException e)
+            {
+                result.set(-2);
+            }
+        });
+        consumer.start();
+        awaitParked(consumer);
+        ring.close();
+        consumer.join(TIMEOUT_MILLIS);
+        assertFalse(consumer.isAlive());
+        assertEquals(-1, result.get());
+    }
+
+    @Test
+    public void closeWakesParkedWriter() throws Exception
+    {
+        final RingBuffer ring = new RingBuffer(16);
+        assertEquals(16, ring.claim());
+        ring.publish(16);
+        final AtomicInteger result = new AtomicInteger(0);
+        final Thread producer = new Thread(() -> {
+            try
+            {
+                result.set(ring.claim());
+            }
+            catch (InterruptedException e)
+            {
+                result.set(-2);
+            }
+        });
+        producer.start();
+        awaitParked(producer);
+        ring.close();
+        producer.join(TIMEOUT_MILLIS);
+        assertFalse(producer.isAlive());
+        assertEquals(-1, result.get());
+    }
+
+    @Test
+    public void interruptWakesParkedReader() throws Exception
+    {
+        final RingBuffer ring = new RingBuffer(16);
+        final AtomicInteger result = new AtomicInteger(0);
+        final Thread consumer = new Thread(() -> {
+            try
+            {
+                result.set(ring.available());
+            }
+            catch (InterruptedException e)
+            {
+                result.set(-2);
+            }
+        });
+        consumer.start();
+        awaitParked(consumer);
+        consumer.interrupt();
+        consumer.join(TIMEOUT_MILLIS);
+        assertFalse(consumer.isAlive());
+        assertEquals(-2, result.get());
+    }
+
+    // Past the spinning, parked in the ring buffer
+    private static void awaitParked(Thread thread) throws InterruptedException
+    {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!(thread.getState() == Thread.State.TIMED_WAITING && LockSupport.getBlocker(thread) instanceof RingBuffer))
+        {
+            assertTrue(System.currentTimeMillis() < deadline, "Thread didn't park");
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+# Generates the FLAC fixtures of FlacSourceTest, with a minimal encoder written
+# from RFC 9639 (independent of the decoder under test). Every frame picks its
+# subframe types (constant, verbatim, fixed, LPC), residual coding method,
+# partition order and header variants at random from a fixed seed, so the
+# files are reproducible. STREAMINFO holds the MD5 of the source PCM, which
+# the tests compare with the decoded samples.
+#
+# Usage: python3 generate.py [DIR]   (default: this script's directory)
+import hashlib, math, os, random, struct, sys
+from collections import Counter
+
+def crc8(data):
+    c = 0
+    for b in data:
+        c ^= b
+        for _ in range(8):
+            c = ((c << 1) ^ 0x07) & 0xFF if c & 0x80 else (c << 1) & 0xFF
+    return c
+
+def crc16(data):
+    c = 0
+    for b in data:
+        c ^= b << 8
+        for _ in range(8):
+            c = ((c << 1) ^ 0x8005) & 0xFFFF if c & 0x8000 else (c << 1) & 0xFFFF
+    return c
+
+class Writer:
+    def __init__(self):
+        self.acc = 0
+        self.n = 0
+        self.out = bytearray()
+
+    def bits(self, v, n):
+        if n == 0:
+            return
+        self.acc = (self.acc << n) | (v & ((1 << n) - 1))
+        self.n += n
+        while self.n >= 8:
+            self.n -= 8
+            self.out.append((self.acc >> self.n) & 0xFF)
+        self.acc &= (1 << self.n) - 1
+
+    def unary(self, q):
+        while q > 32:
+            self.bits(0, 32)
+            q -= 32
+        self.bits(1, q + 1)
+
+    def align(self):
+        if self.n:
+            self.bits(0, 8 - self.n)
+
+def utf8(v):
+    if v < 0x80:
+        return [v]
+    for extra in range(1, 7):
+        if v < 1 << (5 * extra + 6):
+            lead = ((0xFF << (7 - extra)) & 0xFF) | (v >> (6 * extra))
+            return [lead] + [0x80 | ((v >> (6 * (extra - 1 - j))) & 0x3F) for j in range(extra)]
+    raise ValueError(v)
+
+FIXED = [[], [1], [2, -1], [3, -3, 1], [4, -6, 4, -1]]
+
+class Encoder:
+    def __init__(self, seed, escape, wasted):
+        self.rnd = random.Random(seed)
+        self.escape = escape # Probability of an escaped (unencoded) partition
+        self.wasted = wasted # Probability of coding shared trailing zero bits
+        self.stats = Counter()
+
+    def residual(self, w, res, n, order):
+        rnd = self.rnd
+        method = 1 if any(abs(r) > 1 << 20 for r in res) else rnd.choice([0, 1])
+        pbits = 4 if method == 0 else 5
+        porder = 0
+        for p in range(rnd.randint(0, 4), -1, -1):
+            if n % (1 << p) == 0 and (n >> p) >= order:
+                porder = p
+                break
+        w.bits(method, 2)
+        w.bits(porder, 4)
+        self.stats['rice%d' % (method + 1)] += 1
+        size = n >> porder
+        i = 0
+        for p in range(1 << porder):
+            cnt = size - order if p == 0 else size
+            part = res[i:i + cnt]
+            i += cnt
+            if rnd.random() < self.escape:
+                width = max((abs(r) * 2 + 1).bit_length() for r in part) if part else 0
+                if all(r == 0 for r in part) and rnd.random() < 0.5:
+                    width = 0
+                w.bits((1 << pbits) - 1, pbits)
+                w.bits(width, 5)
+                for r in part:
+                    w.bits(r, width)
+                self.stats['escape'] += 1
+            else:
+                m = sum(abs(r) for r in part) / max(1, len(part))
+                k = min(max(0, int(m).bit_length() - 1) if m > 0 else 0, (1 << pbits) - 2)
+                w.bits(k, pbits)
+                for r in part:
+                    u = (r << 1) if r >= 0 else ((-r) << 1) - 1
+                    w.unary(u >> k)
+                    w.bits(u, k)
+
+    def subframe(self, w, x, bps, kind):
+        rnd = self.rnd
+        n = len(x)
+        wasted = 0
+        if any(x) and rnd.random() < self.wasted:
+            while all(v % (1 << (wasted + 1)) == 0 for v in x) and wasted + 1 < bps:
+                wasted += 1
+        if wasted:
+            self.stats['wasted'] += 1
+        y = [v >> wasted for v in x]
+        b = bps - wasted
+
+        def head(t):
+            w.bits(0, 1)
+            w.bits(t, 6)
+            if wasted:
+                w.bits(1, 1)
+                w.unary(wasted - 1)
+            else:
+                w.bits(0, 1)
+
+        if all(v == y[0] for v in y):
+            kind = 'constant'
+        elif kind == 'constant':
+            kind = 'verbatim'
+        if kind == 'lpc' and b >= 28:
+            kind = 'verbatim'
+        if kind == 'fixed' and b >= 28:
+            kind = 'verbatim'
+        self.stats[kind] += 1
+        if kind == 'constant':
+            head(0)
+            w.bits(y[0], b)
+        elif kind == 'verbatim':
+            head(1)
+            for v in y:
+                w.bits(v, b)
+        elif kind == 'fixed':
+            order = min(rnd.randint(0, 4), n)
+            head(8 + order)
+            for v in y[:order]:
+                w.bits(v, b)
+            c = FIXED[order]
+            res = [y[i] - sum(c[j] * y[i - 1 - j] for j in range(order)) for i in range(order, n)]
+            self.residual(w, res, n, order)
+        else:
+            # Scaled second order predictor, plus small random higher orders
+            order = min(rnd.randint(1, 12), n)
+            precision = rnd.randint(8, 15)
+            shift = rnd.randint(0, min(15, precision - 1))
+            coefs = [0] * order
+            coefs[0] = min((1 << (precision - 1)) - 1, 2 << shift)
+            if order > 1:
+                coefs[1] = max(-(1 << (precision - 1)), -(1 << shift))
+            for j in range(2, order):
+                coefs[j] = rnd.randint(-3, 3)
+            head(31 + order)
+            for v in y[:order]:
+                w.bits(v, b)
+            w.bits(precision - 1, 4)
+            w.bits(shift, 5)
+            for c in coefs:
+                w.bits(c, precision)
+            res = [y[i] - (sum(coefs[j] * y[i - 1 - j] for j in range(order)) >> shift) for i in range(order, n)]
+            self.residual(w, res, n, order)
+
+    def frame(self, x, bps, rate, index, first, variable, assign):
+        rnd = self.rnd
+        n = len(x[0])
+        h = [0xFF, 0xF8 | (1 if variable else 0)]
+        if n == 192:
+            bc = 1
+        elif n in (576, 1152, 2304, 4608):
+            bc = {576: 2, 1152: 3, 2304: 4, 4608: 5}[n]
+        elif n in [256 << k for k in range(8)]:
+            bc = 8 + [256 << k for k in range(8)].index(n)
+        elif n <= 256:
+            bc = 6
+        else:
+            bc = 7
+        rc = rnd.choice([0, 9, 12, 13, 14]) # From STREAMINFO, or coded in the header
+        sc = rnd.choice([0, {8: 1, 12: 2, 16: 4, 20: 5, 24: 6, 32: 7}[bps]])
+        h.append(bc << 4 | rc)
+        h.append(assign << 4 | sc << 1)
+        h += utf8(first if variable else index)
+        if bc == 6:
+            h.append(n - 1)
+        if bc == 7:
+            h += [(n - 1) >> 8, (n - 1) & 0xFF]
+        if rc == 12:
+            h.append(rate // 1000 & 0xFF)
+        if rc == 13:
+            h += [rate >> 8 & 0xFF, rate & 0xFF]
+        if rc == 14:
+            h += [rate // 10 >> 8 & 0xFF, rate // 10 & 0xFF]
+        h.append(crc8(h))
+        w = Writer()
+        w.out += bytes(h)
+        if assign == 8:
+            sub = [(x[0], bps), ([a - b for a, b in zip(*x)], bps + 1)]
+        elif assign == 9:
+            sub = [([a - b for a, b in zip(*x)], bps + 1), (x[1], bps)]
+        elif assign == 10:
+            sub = [([(a + b) >> 1 for a, b in zip(*x)], bps), ([a - b for a, b in zip(*x)], bps + 1)]
+        else:
+            sub = [(c, bps) for c in x]
+        self.stats['assign%d' % assign] += 1
+        for s, b in sub:
+            self.subframe(w, s, b, rnd.choice(['verbatim', 'fixed', 'fixed', 'lpc', 'lpc', 'constant']))
+        w.align()
+        w.bits(crc16(w.out), 16)
+        return w.out
+
+def md5(chans, bps):
+    # Signed little endian, whole bytes per sample, interleaved
+    width = (bps + 7) // 8
+    digest = hashlib.md5()
+    for i in range(len(chans[0])):
+        for c in chans:
+            digest.update((c[i] & ((1 << (8 * width)) - 1)).to_bytes(width, 'little'))
+    return digest.digest()
+
+def encode(path, chans, bps, rate, seed, variable=False, blocks=4096, table=True, assign=None,
+           escape=0.1, wasted=0.5, id3=False):
+    enc = Encoder(seed, escape, wasted)
+    rnd = enc.rnd
+    total = len(chans[0])
+    nch = len(chans)
+    sizes = []
+    i = 0
+    while i < total:
+        n = rnd.choice([192, 576, 1152, 2304, 4096, 100, 255, 3000]) if variable else blocks
+        n = min(n, total - i)
+        sizes.append(n)
+        i += n
+    frames = bytearray()
+    seek = []
+    first = 0
+    maxf = 0
+    minf = 1 << 30
+    for index, n in enumerate(sizes):
+        if index % 3 == 0:
+            seek.append((first, len(frames), n))
+        a = (assign if assign is not None else rnd.choice([1, 8, 9, 10])) if nch == 2 else nch - 1
+        out = enc.frame([c[first:first + n] for c in chans], bps, rate, index, first, variable, a)
+        frames += out
+        maxf = max(maxf, len(out))
+        minf = min(minf, len(out))
+        first += n
+
+    out = bytearray()
+    if id3:
+        out += b'ID3\x03\x00\x00' + bytes([0, 0, 1, 5]) + bytes(133)
+    out += b'fLaC'
+    info = struct.pack('>HH', min(sizes) if variable else blocks, max(sizes) if variable else blocks)
+    info += minf.to_bytes(3, 'big') + maxf.to_bytes(3, 'big')
+    packed = (rate << 44) | ((nch - 1) << 41) | ((bps - 1) << 36) | total
+    info += packed.to_bytes(8, 'big') + md5(chans, bps)
+    out += bytes([0]) + len(info).to_bytes(3, 'big') + info
+    if table:
+        st = b''.join(struct.pack('>QQH', s, o, n) for s, o, n in seek)
+        st += struct.pack('>QQH', 0xFFFFFFFFFFFFFFFF, 0, 0) # Placeholder point
+        out += bytes([3]) + len(st).to_bytes(3, 'big') + st
+    pad = bytes(20)
+    out += bytes([0x81]) + len(pad).to_bytes(3, 'big') + pad
+    out += frames
+    out += b'TAG' + bytes(125) # ID3v1 trailer
+    with open(path, 'wb') as f:
+        f.write(out)
+    print('%-20s %7d bytes %s' % (os.path.basename(path), len(out), dict(sorted(enc.stats.items()))))
+
+# Chirp plus noise, with a constant stretch and a full scale square wave
+def signal(n, bps, seed, ch, noise=0.002):
+    rnd = random.Random(seed * 10 + ch)
+    amp = (1 << (bps - 1)) - 1
+    out = []
+    for i in range(n):
+        v = 0.6 * math.sin(2 * math.pi * (200 + 3000 * i / n) * i / 44100 + ch) + noise * (rnd.random() - 0.5)
+        if n // 4 < i < n // 4 + 1000:
+            v = 0.25
+        if n // 2 < i < n // 2 + 300:
+            v = 1.0 if i % 2 else -1.0
+        out.append(max(-amp - 1, min(amp, int(round(v * amp)))))
+    return out
+
+def stereo(n, bps, seed):
+    return [signal(n, bps, seed, 0), signal(n, bps, seed, 1)]
+
+if __name__ == '__main__':
+    d = sys.argv[1] if len(sys.argv) > 1 else os.path.dirname(os.path.abspath(__file__))
+    # One stereo decorrelation mode each; fixed & variable block sizes, with
+    # and without a SEEKTABLE. The larger ones make seeking bisect.
+    encode(d + '/independent.flac', stereo(25000, 16, 1), 16, 44100, 1, blocks=2304, table=True, assign=1)
+    encode(d + '/left-side.flac', stereo(25000, 16, 2), 16, 44100, 2, blocks=1152, table=False, assign=8)
+    encode(d + '/right-side.flac', stereo(20000, 16, 3), 16, 48000, 3, variable=True, table=True, assign=9)
+    encode(d + '/mid-side.flac', stereo(25000, 16, 4), 16, 44100, 4, variable=True, table=False, assign=10)
+    # Escaped partitions & wasted bits in most subframes, behind an ID3v2 tag
+    encode(d + '/escape-wasted.flac', [[v << 4 for v in signal(20000, 20, 5, 0)]], 24, 96000, 5,
+           blocks=4608, escape=0.5, wasted=1.0, id3=True)
+    # More channels and other sample sizes
+    encode(d + '/mono8.flac', [signal(8000, 8, 6, 0)], 8, 8000, 6, variable=True)
+    encode(d + '/three12.flac', [signal(6000, 12, 7, c) for c in range(3)], 12, 22050, 7, blocks=1152)